@@ -0,0 +1,244 @@
+package collinsworth_Project4_2015;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Single-pass adaptive Huffman coding (the FGK algorithm). Encoder and
+ * decoder start from the same empty tree and update it identically after
+ * every symbol, so no frequency pass and no code table are needed: a symbol
+ * seen before is sent as its current code, and a new symbol is sent as the
+ * code of the NYT ("not yet transmitted") leaf followed by the symbol itself
+ * in plain bits.
+ * <p>
+ * The tree is kept as a sibling-ordered Huffman tree: every node carries an
+ * order number, weights never decrease with increasing order, and before a
+ * node's weight is incremented it is swapped with the highest-ordered node of
+ * equal weight. One instance holds the state of one stream, so the encoder
+ * and the decoder each need their own.
+ *
+ * @author Tobyn Collinsworth
+ */
+public class AdaptiveHuffman
+{
+
+    // Tree node: the fields of HuffmanTree's HtNode plus the parent link and
+    // the sibling order the update needs
+    private static class Node
+    {
+        int symbol;     // the symbol of a leaf, NYT for the NYT leaf
+        long count;
+        Node left;
+        Node right;
+        Node parent;
+        int order;
+
+        Node(int symbol, int order, Node parent)
+        {
+            this.symbol = symbol;
+            this.order = order;
+            this.parent = parent;
+        }
+    }
+
+    // Symbol value of the NYT leaf, and of internal nodes
+    private static final int NYT = -1;
+
+    private final int symbolBits;   // number of bits used to send a new symbol
+    private final Node[] nodes;     // nodes by order; the root has the highest order
+    private final Node[] leaves;    // leaf of each symbol seen so far, by symbol
+    private final int[] path;       // scratch space for the bits of one code
+    private final Node root;
+    private Node nyt;
+
+    // Create a coder for bytes
+    public AdaptiveHuffman()
+    {
+        this(8);
+    }
+
+    // Create a coder for symbols of the given number of bits, 1 to 16
+    public AdaptiveHuffman(int symbolBits)
+    {
+        if (symbolBits < 1 || symbolBits > 16)
+        {
+            throw new IllegalArgumentException("Symbols must have between 1 and 16 bits");
+        }
+        this.symbolBits = symbolBits;
+        int symbols = 1 << symbolBits;
+        // Every symbol leaf, the NYT leaf and one internal node per symbol
+        nodes = new Node[2 * symbols + 1];
+        leaves = new Node[symbols];
+        path = new int[nodes.length];
+        root = new Node(NYT, nodes.length - 1, null);
+        nodes[root.order] = root;
+        nyt = root;
+    }
+
+    // Write the code of a symbol and update the tree
+    public void encodeSymbol(BitOutput out, int symbol) throws IOException
+    {
+        if (symbol < 0 || symbol >= leaves.length)
+        {
+            throw new IllegalArgumentException("Symbol " + symbol + " does not fit in " + symbolBits + " bits");
+        }
+        Node leaf = leaves[symbol];
+        writePath(out, leaf != null ? leaf : nyt);
+        if (leaf == null)
+        {
+            out.writeBits(symbol, symbolBits);
+        }
+        update(symbol);
+    }
+
+    // Read the code of a symbol by walking down from the root, then update the tree
+    public int decodeSymbol(BitInput in) throws IOException
+    {
+        Node node = root;
+        while (node.left != null)
+        {
+            node = in.readBits(1) == 0 ? node.left : node.right;
+        }
+        int symbol = node == nyt ? in.readBits(symbolBits) : node.symbol;
+        update(symbol);
+        return symbol;
+    }
+
+    // Write the path from the root to the node: 0 for a left branch, 1 for a right branch
+    private void writePath(BitOutput out, Node node) throws IOException
+    {
+        int depth = 0;
+        for (Node current = node; current != root; current = current.parent)
+        {
+            path[depth++] = current.parent.right == current ? 1 : 0;
+        }
+        // Codes can outgrow one write, so the bits are sent in chunks of at most MAX_BITS
+        long bits = 0;
+        int count = 0;
+        for (int i = depth - 1; i >= 0; i--)
+        {
+            bits = (bits << 1) | path[i];
+            if (++count == BitStream.MAX_BITS)
+            {
+                out.writeBits(bits, count);
+                bits = 0;
+                count = 0;
+            }
+        }
+        out.writeBits(bits, count);
+    }
+
+    // Add one occurrence of the symbol, keeping the sibling order intact
+    private void update(int symbol)
+    {
+        Node q = leaves[symbol];
+        if (q == null)
+        {
+            // The NYT leaf becomes an internal node with a new NYT leaf on the
+            // left and the new symbol's leaf on the right
+            Node parent = nyt;
+            q = new Node(symbol, parent.order - 1, parent);
+            nyt = new Node(NYT, parent.order - 2, parent);
+            parent.right = q;
+            parent.left = nyt;
+            nodes[q.order] = q;
+            nodes[nyt.order] = nyt;
+            leaves[symbol] = q;
+        }
+        while (q != null)
+        {
+            // Find the highest-ordered node with the same weight and take its place
+            Node leader = q;
+            for (int i = q.order + 1; i < nodes.length && nodes[i].count == q.count; i++)
+            {
+                leader = nodes[i];
+            }
+            if (leader != q && leader != q.parent)
+            {
+                swap(q, leader);
+            }
+            q.count++;
+            q = q.parent;
+        }
+    }
+
+    // Exchange the positions of two nodes (with their subtrees) and their orders
+    private void swap(Node a, Node b)
+    {
+        Node aParent = a.parent;
+        Node bParent = b.parent;
+        boolean aLeft = aParent.left == a;
+        boolean bLeft = bParent.left == b;
+        if (aLeft)
+        {
+            aParent.left = b;
+        }
+        else
+        {
+            aParent.right = b;
+        }
+        if (bLeft)
+        {
+            bParent.left = a;
+        }
+        else
+        {
+            bParent.right = a;
+        }
+        a.parent = bParent;
+        b.parent = aParent;
+
+        int order = a.order;
+        a.order = b.order;
+        b.order = order;
+        nodes[a.order] = a;
+        nodes[b.order] = b;
+    }
+
+    // Compress a file of bytes in a single pass; the output is a BitStream file with no code table
+    public static void encodeFile(String inputName, String outputName) throws IOException
+    {
+        AdaptiveHuffman coder = new AdaptiveHuffman();
+        try (InputStream in = new BufferedInputStream(new FileInputStream(inputName), FrequencyCounter.BUFFER_SIZE))
+        {
+            BitStream bitStream = new BitStream(new File(outputName), "w");
+            try
+            {
+                int b;
+                while ((b = in.read()) != -1)
+                {
+                    coder.encodeSymbol(bitStream, b);
+                }
+            } finally
+            {
+                bitStream.close();
+            }
+        }
+    }
+
+    // Recreate a file written by encodeFile
+    public static void decodeFile(String inputName, String outputName) throws IOException
+    {
+        AdaptiveHuffman coder = new AdaptiveHuffman();
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(outputName), FrequencyCounter.BUFFER_SIZE))
+        {
+            BitStream bitStream = new BitStream(new File(inputName), "r");
+            try
+            {
+                while (bitStream.hasMoreBits())
+                {
+                    out.write(coder.decodeSymbol(bitStream));
+                }
+            } finally
+            {
+                bitStream.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package collinsworth_Project4_2015;
+
+import java.util.Arrays;
+
+/**
+ * Priority queue kept as a binary min-heap in two parallel arrays: the keys
+ * as primitive longs and the payloads beside them. Insert and deque are
+ * O(log n) with no per-entry objects, so building a tree of n symbols costs
+ * O(n log n).
+ *
+ * @author Tobyn Collinsworth
+ * @param <T> the payload type
+ */
+public class BinaryHeapQueue<T> implements HuffmanQueue<T>
+{
+
+    private long[] keys;
+    private Object[] payloads;
+    private int count = 0;
+
+    public BinaryHeapQueue()
+    {
+        this(16);
+    }
+
+    // Create a heap with room for the given number of payloads before it has to grow
+    public BinaryHeapQueue(int capacity)
+    {
+        keys = new long[Math.max(1, capacity)];
+        payloads = new Object[keys.length];
+    }
+
+    // Place the new payload at the end of the heap and sift it up to its position
+    @Override
+    public void insert(T payload, long key)
+    {
+        if (count == keys.length)
+        {
+            keys = Arrays.copyOf(keys, count * 2);
+            payloads = Arrays.copyOf(payloads, count * 2);
+        }
+        int pos = count++;
+        while (pos > 0)
+        {
+            int parent = (pos - 1) >>> 1;
+            if (keys[parent] <= key)
+            {
+                break;
+            }
+            keys[pos] = keys[parent];
+            payloads[pos] = payloads[parent];
+            pos = parent;
+        }
+        keys[pos] = key;
+        payloads[pos] = payload;
+    }
+
+    // Remove the root and sift the last payload down from the top to fill the gap
+    @Override
+    @SuppressWarnings("unchecked")
+    public T deque() throws Exception
+    {
+        if (count == 0)
+        {
+            throw new Exception("Queue is empty");
+        }
+        T item = (T) payloads[0];
+        count--;
+        long key = keys[count];
+        Object payload = payloads[count];
+        payloads[count] = null;
+
+        int pos = 0;
+        int half = count >>> 1;
+        while (pos < half)
+        {
+            int child = 2 * pos + 1;
+            if (child + 1 < count && keys[child + 1] < keys[child])
+            {
+                child++;
+            }
+            if (key <= keys[child])
+            {
+                break;
+            }
+            keys[pos] = keys[child];
+            payloads[pos] = payloads[child];
+            pos = child;
+        }
+        keys[pos] = key;
+        payloads[pos] = payload;
+        return item;
+    }
+
+    // Returns the number of payloads in the heap
+    @Override
+    public int listCount()
+    {
+        return count;
+    }
+}
@@ -0,0 +1,57 @@
+package collinsworth_Project4_2015;
+
+import java.io.IOException;
+
+/**
+ * A source of bits, read most significant bit first. Implemented by
+ * {@link BitStream} for files and by {@link BitReader} for bits held in
+ * memory, so code tables and decoders work on either.
+ *
+ * @author Tobyn Collinsworth
+ */
+public interface BitInput
+{
+
+    /**
+     * Reads a specified number of bits.
+     *
+     * @param n the number of bits to be read, at most 32
+     * @return the bits actually read
+     * @throws IOException if n bits are not available
+     */
+    int readBits(int n) throws IOException;
+
+    /**
+     * Reads a specified number of bits into a long.
+     *
+     * @param n the number of bits to be read, at most {@link BitStream#MAX_BITS}
+     * @return the bits actually read
+     * @throws IOException if n bits are not available
+     */
+    long readLongBits(int n) throws IOException;
+
+    /**
+     * Returns the next {@code n} bits without consuming them; positions past
+     * the end read as zeros.
+     *
+     * @param n the number of bits to look at, at most {@link BitStream#MAX_BITS}
+     * @return the next n bits
+     * @throws IOException if the bits cannot be read
+     */
+    long peekBits(int n) throws IOException;
+
+    /**
+     * Consumes {@code n} bits previously examined with {@link #peekBits}.
+     *
+     * @param n the number of bits to skip
+     * @throws IOException if n bits are not available
+     */
+    void skipBits(int n) throws IOException;
+
+    /**
+     * Returns {@code true} if there are bits left to read.
+     *
+     * @return {@code true} if the input is not exhausted
+     */
+    boolean hasMoreBits();
+}
@@ -0,0 +1,23 @@
+package collinsworth_Project4_2015;
+
+import java.io.IOException;
+
+/**
+ * A sink for bits, written most significant bit first. Implemented by
+ * {@link BitStream} for files and by {@link BitWriter} for bits collected in
+ * memory.
+ *
+ * @author Tobyn Collinsworth
+ */
+public interface BitOutput
+{
+
+    /**
+     * Writes the low {@code n} bits of a long.
+     *
+     * @param data the long containing the bits to be written
+     * @param n the number of bits to be written, at most {@link BitStream#MAX_BITS}
+     * @throws IOException if the bits cannot be written
+     */
+    void writeBits(long data, int n) throws IOException;
+}
@@ -0,0 +1,149 @@
+package collinsworth_Project4_2015;
+
+import java.io.IOException;
+
+/**
+ * Reads bits, most significant bit first, from part of a byte array using the
+ * same 64-bit register scheme as {@link BitStream}. Several readers can work
+ * on different blocks of one array at the same time.
+ *
+ * @author Tobyn Collinsworth
+ */
+public class BitReader implements BitInput
+{
+
+    /**
+     * The bytes being read
+     */
+    private final byte[] data;
+
+    /**
+     * Next byte position to move into the register
+     */
+    private int position;
+
+    /**
+     * Position just past the last byte that may be read
+     */
+    private final int limit;
+
+    /**
+     * Bits read from the array but not yet consumed, in the low
+     * {@code registerBits} bits
+     */
+    private long register;
+
+    /**
+     * Number of valid bits in the register
+     */
+    private int registerBits;
+
+    /**
+     * Number of bits not yet read
+     */
+    private long bitlength;
+
+    /**
+     * Creates a reader for a run of bits.
+     *
+     * @param data the array holding the bits
+     * @param offset index of the byte holding the first bit
+     * @param bitLength the number of bits that may be read
+     */
+    public BitReader(byte[] data, int offset, long bitLength)
+    {
+        long end = offset + (bitLength + 7) / 8;
+        if (offset < 0 || bitLength < 0 || end > data.length)
+        {
+            throw new IllegalArgumentException("Bit range lies outside the array");
+        }
+        this.data = data;
+        this.position = offset;
+        this.limit = (int) end;
+        this.bitlength = bitLength;
+    }
+
+    @Override
+    public int readBits(int n) throws IOException
+    {
+        return (int) readLongBits(n);
+    }
+
+    @Override
+    public long readLongBits(int n) throws IOException
+    {
+        if (n < 0 || n > BitStream.MAX_BITS)
+        {
+            throw new IllegalArgumentException("Cannot read " + n + " bits");
+        }
+        if (n > bitlength)
+        {
+            throw new IOException("Unexpected end of data");
+        }
+        if (registerBits < n)
+        {
+            refill();
+        }
+        registerBits -= n;
+        bitlength -= n;
+        return (register >>> registerBits) & ((1L << n) - 1);
+    }
+
+    @Override
+    public long peekBits(int n)
+    {
+        if (registerBits < n)
+        {
+            refill();
+            if (registerBits < n)
+            {
+                return (register << (n - registerBits)) & ((1L << n) - 1);
+            }
+        }
+        return (register >>> (registerBits - n)) & ((1L << n) - 1);
+    }
+
+    @Override
+    public void skipBits(int n) throws IOException
+    {
+        if (n > bitlength)
+        {
+            throw new IOException("Unexpected end of data");
+        }
+        if (registerBits < n)
+        {
+            refill();
+        }
+        registerBits -= n;
+        bitlength -= n;
+    }
+
+    @Override
+    public boolean hasMoreBits()
+    {
+        return bitlength > 0;
+    }
+
+    /**
+     * Returns the number of bits not yet read.
+     *
+     * @return the number of remaining bits
+     */
+    public long bitsRemaining()
+    {
+        return bitlength;
+    }
+
+    /**
+     * Moves bytes into the register until it holds more than
+     * {@link BitStream#MAX_BITS} bits or the range is exhausted.
+     */
+    private void refill()
+    {
+        while (registerBits <= 64 - 8 && position < limit)
+        {
+            register = (register << 8) | (data[position++] & 0xFF);
+            registerBits += 8;
+        }
+    }
+}
@@ -1,188 +1,361 @@
-package collinsworth_Project4_2015;
-
-import java.util.*;
-import java.io.*;
-
-/**
- * This class takes care of the details of reading and writing bits to a file.
- * To be correctly read by a read instance of this class, the file must have
- * been written by a write instance of this class, and the output stream that
- * wrote it must have been closed by calling {@code close()}.
- *
- * @author Nikos
- */
-public class BitStream
-{
-
-    /**
-     * Buffer that temporarily stores bits and is flushed to the file when
-     * enough bits are around
-     */
-    private ArrayList<Integer> stream;
-
-    /**
-     * The underlying file
-     */
-    private RandomAccessFile raf;
-
-    /**
-     * The mode with which the file was opened: "r" = read, "w" = write
-     */
-    private String mode;
-
-    /**
-     * The length in bits of the file (not necessarily a multiple of 8)
-     */
-    private int bitlength;
-
-    /**
-     * Creates a BitStream object and initializes the fields appropriately.
-     *
-     * @param file to be read/written
-     * @param mode open mode: can be either "r" (read) or "w" (write)
-     * @throws java.io.IOException
-     *
-     */
-    public BitStream(File file, String mode) throws IOException
-    {
-        bitlength = 0;
-        this.mode = new String(mode);
-        stream = new ArrayList<>();
-
-        if (mode.equals("w"))
-        {
-            raf = new RandomAccessFile(file, "rw");
-            raf.writeInt(0); // save room for length later
-        }
-        else if (mode.equals("r"))
-        {
-            raf = new RandomAccessFile(file, "r");
-            bitlength = raf.readInt();
-            //sanity check -- reported file length should not be a lie
-            long fileLength = file.length();
-            if ((bitlength + 7) / 8 > fileLength - 4)
-            {
-                throw new IllegalArgumentException("Corrupt input file");
-            }
-        }
-        else
-        {
-            throw new IllegalArgumentException(
-                    "Mode should be either \"r\" or \"w\"");
-        }
-    }
-
-    /**
-     * Writes an integer as bits to the {@code BitStream}.
-     *
-     * @param data the int containing the bits to be written
-     * @param n the number of bits to be written
-     * @throws IOException if the bits cannot be written
-     */
-    public void writeBits(int data, int n) throws IOException
-    {
-        bitlength += n;
-        for (int i = n - 1; i >= 0; i--)
-        {
-            stream.add((data >> i) & 1);
-        }
-        while (stream.size() >= 8)
-        {
-            raf.writeByte(bitsToInt(stream, 8));
-        }
-    }
-
-    /**
-     * Writes all the bits in the buffer to the file, padding with zeros if
-     * necessary.
-     *
-     * @throws IOException if the stream cannot be flushed
-     */
-    private void flushBits() throws IOException
-    {
-        while (stream.size() % 8 != 0)
-        {
-            stream.add(0);
-        }
-        while (stream.size() >= 8)
-        {
-            raf.writeByte(bitsToInt(stream, 8));
-        }
-    }
-
-    /**
-     * Finalizes a bitstream. This method must be called in order that a read
-     * instance can subsequently read the bitstream.
-     *
-     * @throws IOException if the stream cannot be closed
-     */
-    public void close() throws IOException
-    {
-        if (mode.equals("w"))
-        {
-            flushBits();
-            raf.seek(0);
-            raf.writeInt(bitlength);
-        }
-        raf.close();
-    }
-
-    /**
-     * Reads a specified number of bits from the Bitstream.
-     *
-     * @param n the number of bits to be read
-     * @return the bits actually read
-     * @throws IOException if n bits are not available
-     */
-    public int readBits(int n) throws IOException
-    {
-        int bits;
-        try
-        {
-            while (stream.size() < n)
-            {
-                byte b = raf.readByte();
-                for (int i = 7; i >= 0; i--)
-                {
-                    stream.add((b >> i) & 1);
-                }
-            }
-        } catch (EOFException e)
-        {
-            throw new IOException("Unexpected end of file");
-        }
-        bits = bitsToInt(stream, n);
-        bitlength -= n;
-        return bits;
-    }
-
-    /**
-     * Converts a sequence of n bits to an int.
-     *
-     * @param bits is the sequence of bits.
-     * @param n is the number of bits to use from this sequence.
-     * @return an n-bit int from the bits of the sequence.
-     */
-    private static int bitsToInt(List<Integer> bits, int n)
-    {
-        int ret = 0;
-        for (int i = 0; i < n; i++)
-        {
-            ret = (ret << 1) | bits.get(0);
-            bits.remove(0);
-        }
-        return ret;
-    }
-
-    /**
-     * For a read bitstream, returns {@code true} if the bitstream is not
-     * exhausted.
-     *
-     * @return {@code true} if the bitstream is not exhausted
-     */
-    public boolean hasMoreBits()
-    {
-        return bitlength > 0;
-    }
-
-}
+package collinsworth_Project4_2015;
+
+import java.io.*;
+
+/**
+ * This class takes care of the details of reading and writing bits to a file.
+ * To be correctly read by a read instance of this class, the file must have
+ * been written by a write instance of this class, and the output stream that
+ * wrote it must have been closed by calling {@code close()}.
+ * <p>
+ * Bits are accumulated in a 64-bit register and moved to and from the file
+ * through a large byte buffer, so a single call can read or write up to
+ * {@link #MAX_BITS} bits and the file is only touched once per buffer. The
+ * file layout is unchanged: a 4-byte bit length followed by the bits, most
+ * significant bit first, padded with zeros to a whole byte.
+ *
+ * @author Nikos
+ */
+public class BitStream implements BitInput, BitOutput, Closeable
+{
+
+    /**
+     * The largest number of bits that can be read or written in one call
+     */
+    public static final int MAX_BITS = 57;
+
+    /**
+     * Size in bytes of the buffer between the bit register and the file
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Largest bit length the 4-byte header can record (read as unsigned)
+     */
+    private static final long MAX_BIT_LENGTH = 0xFFFFFFFFL;
+
+    /**
+     * Byte buffer that is flushed to (or refilled from) the file when full
+     * (or empty)
+     */
+    private byte[] buffer;
+
+    /**
+     * Next byte position to use in the buffer
+     */
+    private int position;
+
+    /**
+     * Number of valid bytes in the buffer of a read stream
+     */
+    private int limit;
+
+    /**
+     * Register holding bits that have not yet been moved to or from the
+     * buffer; the valid bits are the low {@code registerBits} bits
+     */
+    private long register;
+
+    /**
+     * Number of valid bits in the register
+     */
+    private int registerBits;
+
+    /**
+     * The underlying file
+     */
+    private RandomAccessFile raf;
+
+    /**
+     * The mode with which the file was opened: "r" = read, "w" = write
+     */
+    private String mode;
+
+    /**
+     * The length in bits of the file (not necessarily a multiple of 8). For a
+     * read stream this is the number of bits not yet read.
+     */
+    private long bitlength;
+
+    /**
+     * Creates a BitStream object and initializes the fields appropriately.
+     *
+     * @param file to be read/written
+     * @param mode open mode: can be either "r" (read) or "w" (write)
+     * @throws java.io.IOException
+     *
+     */
+    public BitStream(File file, String mode) throws IOException
+    {
+        bitlength = 0;
+        this.mode = mode;
+        buffer = new byte[BUFFER_SIZE];
+
+        if (mode.equals("w"))
+        {
+            raf = new RandomAccessFile(file, "rw");
+            raf.setLength(0);
+            raf.writeInt(0); // save room for length later
+        }
+        else if (mode.equals("r"))
+        {
+            raf = new RandomAccessFile(file, "r");
+            bitlength = raf.readInt() & MAX_BIT_LENGTH;
+            //sanity check -- reported file length should not be a lie
+            long fileLength = file.length();
+            if ((bitlength + 7) / 8 > fileLength - 4)
+            {
+                raf.close();
+                throw new IllegalArgumentException("Corrupt input file");
+            }
+        }
+        else
+        {
+            throw new IllegalArgumentException(
+                    "Mode should be either \"r\" or \"w\"");
+        }
+    }
+
+    /**
+     * Writes an integer as bits to the {@code BitStream}.
+     *
+     * @param data the int containing the bits to be written
+     * @param n the number of bits to be written
+     * @throws IOException if the bits cannot be written
+     */
+    public void writeBits(int data, int n) throws IOException
+    {
+        writeBits((long) data, n);
+    }
+
+    /**
+     * Writes the low {@code n} bits of a long to the {@code BitStream}, most
+     * significant bit first.
+     *
+     * @param data the long containing the bits to be written
+     * @param n the number of bits to be written, at most {@link #MAX_BITS}
+     * @throws IOException if the bits cannot be written
+     */
+    @Override
+    public void writeBits(long data, int n) throws IOException
+    {
+        if (n < 0 || n > MAX_BITS)
+        {
+            throw new IllegalArgumentException("Cannot write " + n + " bits");
+        }
+        bitlength += n;
+        register = (register << n) | (data & mask(n));
+        registerBits += n;
+        while (registerBits >= 8)
+        {
+            registerBits -= 8;
+            if (position == buffer.length)
+            {
+                flushBuffer();
+            }
+            buffer[position++] = (byte) (register >>> registerBits);
+        }
+    }
+
+    /**
+     * Writes the filled part of the byte buffer to the file.
+     *
+     * @throws IOException if the buffer cannot be written
+     */
+    private void flushBuffer() throws IOException
+    {
+        raf.write(buffer, 0, position);
+        position = 0;
+    }
+
+    /**
+     * Writes all the bits in the buffer to the file, padding with zeros if
+     * necessary.
+     *
+     * @throws IOException if the stream cannot be flushed
+     */
+    private void flushBits() throws IOException
+    {
+        if (registerBits > 0)
+        {
+            if (position == buffer.length)
+            {
+                flushBuffer();
+            }
+            buffer[position++] = (byte) (register << (8 - registerBits));
+            registerBits = 0;
+        }
+        flushBuffer();
+    }
+
+    /**
+     * Finalizes a bitstream. This method must be called in order that a read
+     * instance can subsequently read the bitstream.
+     *
+     * @throws IOException if the stream cannot be closed
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            if (mode.equals("w"))
+            {
+                if (bitlength > MAX_BIT_LENGTH)
+                {
+                    throw new IOException("Bitstream too long for header: "
+                            + bitlength + " bits");
+                }
+                flushBits();
+                raf.seek(0);
+                raf.writeInt((int) bitlength);
+            }
+        } finally
+        {
+            raf.close();
+        }
+    }
+
+    /**
+     * Reads a specified number of bits from the Bitstream.
+     *
+     * @param n the number of bits to be read, at most 32
+     * @return the bits actually read
+     * @throws IOException if n bits are not available
+     */
+    @Override
+    public int readBits(int n) throws IOException
+    {
+        return (int) readLongBits(n);
+    }
+
+    /**
+     * Reads a specified number of bits from the Bitstream into a long.
+     *
+     * @param n the number of bits to be read, at most {@link #MAX_BITS}
+     * @return the bits actually read
+     * @throws IOException if n bits are not available
+     */
+    @Override
+    public long readLongBits(int n) throws IOException
+    {
+        if (n < 0 || n > MAX_BITS)
+        {
+            throw new IllegalArgumentException("Cannot read " + n + " bits");
+        }
+        if (registerBits < n)
+        {
+            refill();
+            if (registerBits < n)
+            {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        registerBits -= n;
+        bitlength -= n;
+        return (register >>> registerBits) & mask(n);
+    }
+
+    /**
+     * Returns the next {@code n} bits of the Bitstream without consuming them.
+     * Positions past the end of the file read as zeros, so a decoder can always
+     * peek a full lookup width and then consume only the bits it used.
+     *
+     * @param n the number of bits to look at, at most {@link #MAX_BITS}
+     * @return the next n bits, most significant bit first
+     * @throws IOException if the file cannot be read
+     */
+    @Override
+    public long peekBits(int n) throws IOException
+    {
+        if (registerBits < n)
+        {
+            refill();
+            if (registerBits < n)
+            {
+                return (register << (n - registerBits)) & mask(n);
+            }
+        }
+        return (register >>> (registerBits - n)) & mask(n);
+    }
+
+    /**
+     * Consumes {@code n} bits previously examined with {@link #peekBits}.
+     *
+     * @param n the number of bits to skip, at most {@link #MAX_BITS}
+     * @throws IOException if n bits are not available
+     */
+    @Override
+    public void skipBits(int n) throws IOException
+    {
+        if (n > bitlength)
+        {
+            throw new IOException("Unexpected end of file");
+        }
+        if (registerBits < n)
+        {
+            refill();
+        }
+        registerBits -= n;
+        bitlength -= n;
+    }
+
+    /**
+     * For a read bitstream, returns the number of bits not yet read.
+     *
+     * @return the number of remaining bits
+     */
+    public long bitsRemaining()
+    {
+        return bitlength;
+    }
+
+    /**
+     * Moves bytes from the file into the register until it holds more than
+     * {@link #MAX_BITS} bits or the file is exhausted.
+     *
+     * @throws IOException if the file cannot be read
+     */
+    private void refill() throws IOException
+    {
+        while (registerBits <= 64 - 8)
+        {
+            if (position == limit)
+            {
+                limit = raf.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0)
+                {
+                    limit = 0;
+                    return;
+                }
+            }
+            register = (register << 8) | (buffer[position++] & 0xFF);
+            registerBits += 8;
+        }
+    }
+
+    /**
+     * Returns a mask selecting the low {@code n} bits of a long.
+     *
+     * @param n the number of bits, at most 63
+     * @return the mask
+     */
+    private static long mask(int n)
+    {
+        return (1L << n) - 1;
+    }
+
+    /**
+     * For a read bitstream, returns {@code true} if the bitstream is not
+     * exhausted.
+     *
+     * @return {@code true} if the bitstream is not exhausted
+     */
+    @Override
+    public boolean hasMoreBits()
+    {
+        return bitlength > 0;
+    }
+
+}
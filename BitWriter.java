@@ -0,0 +1,139 @@
+package collinsworth_Project4_2015;
+
+import java.util.Arrays;
+
+/**
+ * Collects bits in memory, most significant bit first, using the same 64-bit
+ * register scheme as {@link BitStream}. Used to encode a block on its own
+ * thread before it is written to a file at its final position.
+ *
+ * @author Tobyn Collinsworth
+ */
+public class BitWriter implements BitOutput
+{
+
+    /**
+     * The bytes written so far
+     */
+    private byte[] buffer;
+
+    /**
+     * Number of bytes of {@code buffer} in use
+     */
+    private int position;
+
+    /**
+     * Bits not yet moved to the buffer, in the low {@code registerBits} bits
+     */
+    private long register;
+
+    /**
+     * Number of valid bits in the register
+     */
+    private int registerBits;
+
+    /**
+     * Total number of bits written
+     */
+    private long bitlength;
+
+    /**
+     * Creates an empty writer.
+     *
+     * @param expectedBytes the number of bytes to make room for up front
+     */
+    public BitWriter(int expectedBytes)
+    {
+        buffer = new byte[Math.max(16, expectedBytes)];
+    }
+
+    /**
+     * Writes the low {@code n} bits of a long, most significant bit first.
+     *
+     * @param data the long containing the bits to be written
+     * @param n the number of bits to be written, at most {@link BitStream#MAX_BITS}
+     */
+    @Override
+    public void writeBits(long data, int n)
+    {
+        if (n < 0 || n > BitStream.MAX_BITS)
+        {
+            throw new IllegalArgumentException("Cannot write " + n + " bits");
+        }
+        bitlength += n;
+        register = (register << n) | (data & ((1L << n) - 1));
+        registerBits += n;
+        if (registerBits >= 8)
+        {
+            if (position + 8 > buffer.length)
+            {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + 8));
+            }
+            while (registerBits >= 8)
+            {
+                registerBits -= 8;
+                buffer[position++] = (byte) (register >>> registerBits);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bits written.
+     *
+     * @return the bit length
+     */
+    public long bitLength()
+    {
+        return bitlength;
+    }
+
+    /**
+     * Empties the writer so its buffer can be reused for another message.
+     */
+    void reset()
+    {
+        position = 0;
+        register = 0;
+        registerBits = 0;
+        bitlength = 0;
+    }
+
+    /**
+     * Pads the bits written so far with zeros to a whole byte and copies them
+     * into an array, leaving the writer as it was.
+     *
+     * @param out the array to copy into
+     * @param offset index in {@code out} of the first byte
+     * @return the number of bytes copied, {@code (bitLength() + 7) / 8}
+     */
+    int copyTo(byte[] out, int offset)
+    {
+        System.arraycopy(buffer, 0, out, offset, position);
+        if (registerBits > 0)
+        {
+            out[offset + position] = (byte) (register << (8 - registerBits));
+            return position + 1;
+        }
+        return position;
+    }
+
+    /**
+     * Pads the bits written so far with zeros to a whole byte and returns
+     * them. The writer can no longer be used afterwards.
+     *
+     * @return the written bytes, {@code (bitLength() + 7) / 8} of them
+     */
+    public byte[] toByteArray()
+    {
+        if (registerBits > 0)
+        {
+            if (position == buffer.length)
+            {
+                buffer = Arrays.copyOf(buffer, position + 1);
+            }
+            buffer[position++] = (byte) (register << (8 - registerBits));
+            registerBits = 0;
+        }
+        return Arrays.copyOf(buffer, position);
+    }
+}
@@ -0,0 +1,318 @@
+package collinsworth_Project4_2015;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Encodes and decodes one block of bytes held in memory. Shared by the block
+ * container and the streaming classes, which differ only in how the encoded
+ * blocks are framed.
+ * <p>
+ * Before a code is built, {@link #chooseType} estimates from the block's
+ * histogram how many bits Huffman coding would take. A block that would not
+ * shrink is stored as is, and a block of one repeated byte is stored as that
+ * byte, so data that is already compressed costs a count and a copy instead
+ * of a code table and a coding pass.
+ *
+ * @author Tobyn Collinsworth
+ */
+final class BlockCodec
+{
+
+    /**
+     * Longest code length used for blocks, keeping decoder tables small
+     */
+    static final int MAX_CODE_LENGTH = 15;
+
+    /**
+     * A block is stored unless coding saves at least 1/2^this of its bits:
+     * a smaller saving is not worth decoding for
+     */
+    private static final int STORED_MARGIN_SHIFT = 6;
+
+    /**
+     * How a block is stored, written as the byte that starts each block of a
+     * container and each frame of a stream
+     */
+    enum BlockType
+    {
+        HUFFMAN,    // Huffman codes, with a block table unless a code is shared
+        STORED,     // the bytes themselves
+        RLE         // one byte, repeated for the whole block
+    }
+
+    private BlockCodec()
+    {
+    }
+
+    /**
+     * The bits of an encoded block
+     */
+    static class EncodedBlock
+    {
+        final byte[] bytes;
+        final int offset;
+        final int length;
+        final long bitLength;
+        final int symbolCount;
+        final BlockType type;
+
+        EncodedBlock(byte[] bytes, long bitLength, int symbolCount)
+        {
+            this(BlockType.HUFFMAN, bytes, 0, bytes.length, bitLength, symbolCount);
+        }
+
+        /**
+         * @param bytes the array holding the block's bits, which for a stored
+         * block may be the input itself
+         * @param offset index in {@code bytes} of the first byte of the block
+         * @param length number of bytes of the block
+         */
+        EncodedBlock(BlockType type, byte[] bytes, int offset, int length, long bitLength, int symbolCount)
+        {
+            this.type = type;
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+            this.bitLength = bitLength;
+            this.symbolCount = symbolCount;
+        }
+    }
+
+    /**
+     * Counts the bytes of a block.
+     *
+     * @param data the array holding the block
+     * @param offset index of the first byte of the block
+     * @param length number of bytes in the block
+     * @return the byte histogram of the block
+     */
+    static long[] count(byte[] data, int offset, int length)
+    {
+        long[] counts = new long[FrequencyCounter.BYTE_SYMBOLS];
+        FrequencyCounter.countBytesInterleaved(data, offset, length, counts);
+        return counts;
+    }
+
+    /**
+     * Chooses how to store a block from its histogram, without building a
+     * code. With a shared code the coded size is exact; otherwise it is the
+     * entropy of the histogram, which no code beats, plus an estimate of the
+     * block table.
+     *
+     * @param counts the byte histogram of the block
+     * @param length number of bytes in the block, at least 1
+     * @param shared the shared code, or {@code null} for a block table
+     * @param overheadBits bits the coded block needs besides its codes and
+     * table, such as a jump table
+     * @return the type of the block
+     */
+    static BlockType chooseType(long[] counts, int length, CanonicalCode shared, int overheadBits)
+    {
+        int distinct = 0;
+        double codedBits = overheadBits;
+        for (int b = 0; b < counts.length; b++)
+        {
+            if (counts[b] == length)
+            {
+                return BlockType.RLE;
+            }
+            if (counts[b] != 0)
+            {
+                distinct++;
+                if (shared == null)
+                {
+                    codedBits += counts[b] * (Math.log((double) length / counts[b]) / Math.log(2));
+                }
+                else if (shared.getLength(b) > 0)
+                {
+                    codedBits += counts[b] * shared.getLength(b);
+                }
+                else
+                {
+                    // A byte the shared code cannot code
+                    return BlockType.STORED;
+                }
+            }
+        }
+        if (shared == null)
+        {
+            // A table costs about 5 bits per symbol after a small header
+            codedBits += 40 + 8 * distinct;
+        }
+        return codedBits < 8.0 * (length - (length >> STORED_MARGIN_SHIFT)) ? BlockType.HUFFMAN : BlockType.STORED;
+    }
+
+    /**
+     * Encodes one block as the type {@link #chooseType} picks: Huffman codes
+     * in one or {@link InterleavedCodec#STREAMS} streams, the bytes
+     * themselves, or the one byte the block repeats. A stored block that is
+     * the whole of {@code data} is not copied.
+     *
+     * @param data the array holding the block
+     * @param offset index of the first byte of the block
+     * @param length number of bytes in the block, at least 1
+     * @param shared the shared code, or {@code null} for a block table
+     * @param streams the number of bitstreams of a Huffman block
+     * @return the encoded block, without its type byte
+     * @throws IOException if the bits cannot be written
+     */
+    static EncodedBlock encodeTyped(byte[] data, int offset, int length, CanonicalCode shared, int streams)
+            throws IOException
+    {
+        long[] counts = count(data, offset, length);
+        BlockType type = chooseType(counts, length, shared,
+                streams == 1 ? 0 : 8 * InterleavedCodec.JUMP_TABLE_BYTES);
+        if (type == BlockType.HUFFMAN)
+        {
+            EncodedBlock coded = streams == 1
+                    ? encode(data, offset, length, shared, counts)
+                    : InterleavedCodec.encode(data, offset, length, shared, counts);
+            // The estimate of a block table can be a little short
+            if (coded.bitLength < 8L * length)
+            {
+                return coded;
+            }
+            type = BlockType.STORED;
+        }
+        return uncoded(type, data, offset, length);
+    }
+
+    /**
+     * Returns a block that is not Huffman coded: the bytes of a
+     * {@link BlockType#STORED} block, not copied, or the one byte a
+     * {@link BlockType#RLE} block repeats.
+     *
+     * @param type the type of the block
+     * @param data the array holding the block
+     * @param offset index of the first byte of the block
+     * @param length number of bytes in the block, at least 1
+     * @return the block, without its type byte
+     */
+    static EncodedBlock uncoded(BlockType type, byte[] data, int offset, int length)
+    {
+        if (type == BlockType.RLE)
+        {
+            return new EncodedBlock(type, new byte[] {data[offset]}, 0, 1, 8, length);
+        }
+        return new EncodedBlock(type, data, offset, length, 8L * length, length);
+    }
+
+    /**
+     * Encodes one block, building and storing its own code table first if no
+     * shared code is given.
+     *
+     * @param data the array holding the block
+     * @param offset index of the first byte of the block
+     * @param length number of bytes in the block, at least 1
+     * @param shared the shared code, or {@code null} for a block table
+     * @param counts the byte histogram of the block
+     * @return the encoded block
+     * @throws IOException if the bits cannot be written
+     */
+    private static EncodedBlock encode(byte[] data, int offset, int length, CanonicalCode shared,
+            long[] counts) throws IOException
+    {
+        BitWriter bits = new BitWriter(length / 2);
+        CanonicalCode code = shared;
+        if (code == null)
+        {
+            code = CanonicalCode.fromFrequencies(counts, MAX_CODE_LENGTH);
+            code.write(bits);
+        }
+        for (int i = offset, end = offset + length; i < end; i++)
+        {
+            code.encodeSymbol(bits, data[i] & 0xFF);
+        }
+        long bitLength = bits.bitLength();
+        return new EncodedBlock(bits.toByteArray(), bitLength, length);
+    }
+
+    /**
+     * Decodes one block that starts with its type byte.
+     *
+     * @param bits the array holding the block, its type byte at index 0
+     * @param bitLength the number of bits of the block, type byte included
+     * @param shared the decoder for the shared code, or {@code null} if
+     * Huffman blocks start with their own table
+     * @param streams the number of bitstreams of a Huffman block
+     * @param out the array to decode into
+     * @param offset index in {@code out} of the first decoded byte
+     * @param count the number of bytes the block decodes to
+     * @throws IOException if the block is corrupt
+     */
+    static void decodeTyped(byte[] bits, long bitLength, TableDecoder shared, int streams,
+            byte[] out, int offset, int count) throws IOException
+    {
+        if (bitLength < 8 || bits[0] < 0 || bits[0] >= BlockType.values().length)
+        {
+            throw new IOException("Corrupt block: no block type");
+        }
+        switch (BlockType.values()[bits[0]])
+        {
+            case STORED:
+                if (bitLength != 8 + 8L * count)
+                {
+                    throw new IOException("Corrupt block: stored block of " + bitLength + " bits");
+                }
+                System.arraycopy(bits, 1, out, offset, count);
+                break;
+            case RLE:
+                if (bitLength != 16)
+                {
+                    throw new IOException("Corrupt block: run block of " + bitLength + " bits");
+                }
+                Arrays.fill(out, offset, offset + count, bits[1]);
+                break;
+            default:
+                if (streams == 1)
+                {
+                    decode(bits, 1, bitLength - 8, shared, out, offset, count);
+                }
+                else
+                {
+                    InterleavedCodec.decode(bits, 1, bitLength - 8, shared, out, offset, count);
+                }
+        }
+    }
+
+    /**
+     * Decodes one block.
+     *
+     * @param bits the array holding the encoded block
+     * @param start index in {@code bits} of the first byte of the block
+     * @param bitLength the number of encoded bits, including any block table
+     * @param shared the decoder for the shared code, or {@code null} if the
+     * block starts with its own table
+     * @param out the array to decode into
+     * @param offset index in {@code out} of the first decoded byte
+     * @param count the number of bytes the block decodes to
+     * @throws IOException if the block is corrupt
+     */
+    private static void decode(byte[] bits, int start, long bitLength, TableDecoder shared,
+            byte[] out, int offset, int count) throws IOException
+    {
+        if (count == 0)
+        {
+            if (bitLength != 0)
+            {
+                throw new IOException("Corrupt block: bits without symbols");
+            }
+            return;
+        }
+        BitReader in = new BitReader(bits, start, bitLength);
+        TableDecoder decoder = shared;
+        if (decoder == null)
+        {
+            decoder = CanonicalCode.read(in).createDecoder(TableDecoder.DEFAULT_LOOKUP_BITS);
+        }
+        for (int i = offset, end = offset + count; i < end; i++)
+        {
+            out[i] = (byte) decoder.decodeSymbol(in);
+        }
+        if (in.hasMoreBits())
+        {
+            throw new IOException("Corrupt block: extra bits after the last symbol");
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package collinsworth_Project4_2015;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Decompresses a block container written by {@link BlockEncoder}. The
+ * trailer and index are read first; because the index gives every block's
+ * file offset, bit length and output position, the blocks are then decoded
+ * independently on a {@link ForkJoinPool} and each one is written straight
+ * to its place in the output file.
+ *
+ * @author Tobyn Collinsworth
+ */
+public class BlockDecoder
+{
+
+    /**
+     * The pool that decodes blocks
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a decoder that uses the common pool.
+     */
+    public BlockDecoder()
+    {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a decoder.
+     *
+     * @param pool the pool that decodes blocks
+     */
+    public BlockDecoder(ForkJoinPool pool)
+    {
+        this.pool = pool;
+    }
+
+    /**
+     * Decompresses a block container.
+     *
+     * @param inputName the container file
+     * @param outputName the file to recreate
+     * @throws IOException if a file cannot be read or written, or the
+     * container is corrupt
+     */
+    public void decodeFile(String inputName, String outputName) throws IOException
+    {
+        try (FileChannel in = FileChannel.open(Paths.get(inputName), StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(Paths.get(outputName), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            BlockIndex index = BlockIndex.read(in);
+
+            // Positional reads and writes leave the channels' own positions alone,
+            // so every task can read its block and write its output independently.
+            // A bounded window of blocks is in flight, so a corrupt block stops the
+            // decode without the blocks after it being read and decoded first
+            ArrayDeque<Future<Void>> pending = new ArrayDeque<>();
+            int window = 2 * pool.getParallelism();
+            try
+            {
+                for (int i = 0; i < index.blockCount(); i++)
+                {
+                    final int block = i;
+                    pending.add(pool.submit(() ->
+                    {
+                        ByteBuffer decoded = ByteBuffer.wrap(index.decodeBlock(in, block));
+                        long position = index.blockStart(block);
+                        while (decoded.hasRemaining())
+                        {
+                            position += out.write(decoded, position);
+                        }
+                        return null;
+                    }));
+                    if (pending.size() >= window)
+                    {
+                        BlockEncoder.await(pending.poll());
+                    }
+                }
+                while (!pending.isEmpty())
+                {
+                    BlockEncoder.await(pending.poll());
+                }
+            } finally
+            {
+                for (Future<Void> task : pending)
+                {
+                    task.cancel(false);
+                }
+            }
+        }
+    }
+}
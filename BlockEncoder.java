@@ -0,0 +1,372 @@
+package collinsworth_Project4_2015;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Compresses a file as a sequence of fixed-size blocks of bytes that are
+ * counted and encoded concurrently on a {@link ForkJoinPool}. Blocks are
+ * encoded in memory and written in input order, so the output does not
+ * depend on the number of threads.
+ * <p>
+ * In {@link TableMode#SHARED} mode the whole file is counted first (block by
+ * block, in parallel) and one canonical code is stored in the header. In
+ * {@link TableMode#PER_BLOCK} mode each block is counted and gets its own
+ * code table at the start of its bits, so only one pass over the input is
+ * needed.
+ * <p>
+ * With {@link InterleavedCodec#STREAMS} streams per block each block is
+ * split into four interleaved bitstreams (see {@link InterleavedCodec}) that
+ * the decoder reads in parallel.
+ * <p>
+ * Each block starts with a byte giving its {@link BlockCodec.BlockType},
+ * chosen from the block's histogram before any code is built: a block that
+ * Huffman coding would not shrink is stored as is, and a block of one
+ * repeated byte as that byte.
+ * <p>
+ * Container layout (big-endian):
+ * <pre>
+ * header   int magic "HUFB", byte version, byte table mode, int block size,
+ *          byte streams per block
+ *          [SHARED only] int table length, table bytes ({@link CanonicalCode#write})
+ * blocks   per block: byte type, then its bits padded to a whole byte
+ * index    per block: long file offset, long bit length, int symbol count
+ * trailer  long original length, long index offset, int block count, int magic
+ * </pre>
+ * The offset of a block is that of its type byte, and its bit length
+ * includes the type byte.
+ *
+ * @author Tobyn Collinsworth
+ */
+public class BlockEncoder
+{
+
+    /**
+     * How code tables are shared between blocks
+     */
+    public enum TableMode
+    {
+        SHARED,     // one table for the whole file, stored in the header
+        PER_BLOCK   // one table per block, stored with the block
+    }
+
+    /**
+     * Identifies a block container, "HUFB"
+     */
+    public static final int MAGIC = 0x48554642;
+
+    /**
+     * Version of the container layout: typed blocks, and the number of
+     * streams in the header
+     */
+    public static final int TYPED_VERSION = 3;
+
+    /**
+     * Size in bytes of the header before any shared table
+     */
+    public static final int HEADER_BYTES = 4 + 1 + 1 + 4 + 1;
+
+    /**
+     * Block size used when none is given
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+    /**
+     * Longest code length used for blocks, keeping decoder tables small
+     */
+    public static final int MAX_CODE_LENGTH = BlockCodec.MAX_CODE_LENGTH;
+
+    /**
+     * Size in bytes of one index entry
+     */
+    public static final int INDEX_ENTRY_BYTES = 8 + 8 + 4;
+
+    /**
+     * Size in bytes of the trailer
+     */
+    public static final int TRAILER_BYTES = 8 + 8 + 4 + 4;
+
+    /**
+     * Number of bytes per block
+     */
+    private final int blockSize;
+
+    /**
+     * How code tables are shared between blocks
+     */
+    private final TableMode tableMode;
+
+    /**
+     * The pool that counts and encodes blocks
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Number of bitstreams per block, 1 or {@link InterleavedCodec#STREAMS}
+     */
+    private final int streams;
+
+    /**
+     * Creates an encoder with the default block size, one shared table and
+     * the common pool.
+     */
+    public BlockEncoder()
+    {
+        this(DEFAULT_BLOCK_SIZE, TableMode.SHARED, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates an encoder.
+     *
+     * @param blockSize the number of bytes per block
+     * @param tableMode how code tables are shared between blocks
+     * @param pool the pool that counts and encodes blocks
+     */
+    public BlockEncoder(int blockSize, TableMode tableMode, ForkJoinPool pool)
+    {
+        this(blockSize, tableMode, pool, 1);
+    }
+
+    /**
+     * Creates an encoder that may split each block into interleaved streams.
+     *
+     * @param blockSize the number of bytes per block
+     * @param tableMode how code tables are shared between blocks
+     * @param pool the pool that counts and encodes blocks
+     * @param streams the number of bitstreams per block, 1 or
+     * {@link InterleavedCodec#STREAMS}
+     */
+    public BlockEncoder(int blockSize, TableMode tableMode, ForkJoinPool pool, int streams)
+    {
+        if (blockSize < 1)
+        {
+            throw new IllegalArgumentException("Block size must be positive");
+        }
+        if (streams != 1 && streams != InterleavedCodec.STREAMS)
+        {
+            throw new IllegalArgumentException("Blocks hold 1 or " + InterleavedCodec.STREAMS + " streams");
+        }
+        this.blockSize = blockSize;
+        this.tableMode = tableMode;
+        this.pool = pool;
+        this.streams = streams;
+    }
+
+    /**
+     * Compresses a file into a block container.
+     *
+     * @param inputName the file to compress
+     * @param outputName the container file to create
+     * @throws IOException if a file cannot be read or written
+     */
+    public void encodeFile(String inputName, String outputName) throws IOException
+    {
+        CanonicalCode shared = null;
+        if (tableMode == TableMode.SHARED)
+        {
+            shared = CanonicalCode.fromFrequencies(countFile(inputName), maxCodeLength());
+        }
+        encodeFile(inputName, outputName, shared);
+    }
+
+    /**
+     * Compresses a file into a block container with a code built elsewhere,
+     * such as one from a {@link FrequencySample}, instead of counting the
+     * file first. A block holding a byte that the code cannot code is
+     * stored instead.
+     *
+     * @param inputName the file to compress
+     * @param outputName the container file to create
+     * @param shared the code for every block, stored in the header; only
+     * used in {@link TableMode#SHARED} mode
+     * @throws IOException if a file cannot be read or written
+     */
+    public void encodeFile(String inputName, String outputName, CanonicalCode shared) throws IOException
+    {
+        if (tableMode == TableMode.PER_BLOCK)
+        {
+            shared = null;
+        }
+        try (InputStream in = new FileInputStream(inputName);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(outputName), FrequencyCounter.BUFFER_SIZE)))
+        {
+            out.writeInt(MAGIC);
+            out.writeByte(TYPED_VERSION);
+            out.writeByte(tableMode.ordinal());
+            out.writeInt(blockSize);
+            out.writeByte(streams);
+            long offset = HEADER_BYTES;
+            if (tableMode == TableMode.SHARED)
+            {
+                BitWriter table = new BitWriter(64);
+                if (shared != null)
+                {
+                    shared.write(table);
+                }
+                byte[] tableBytes = table.toByteArray();
+                out.writeInt(tableBytes.length);
+                out.write(tableBytes);
+                offset += 4 + tableBytes.length;
+            }
+
+            // Keep a bounded window of blocks in flight and write them back in input order
+            ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+            DataOutputStream index = new DataOutputStream(indexBytes);
+            ArrayDeque<Future<BlockCodec.EncodedBlock>> pending = new ArrayDeque<>();
+            int window = 2 * pool.getParallelism();
+            long originalLength = 0;
+            int blockCount = 0;
+            final CanonicalCode code = shared;
+            byte[] block;
+            while ((block = readBlock(in)) != null)
+            {
+                if (tableMode == TableMode.SHARED && code == null)
+                {
+                    throw new IOException("No shared code given for a non-empty input");
+                }
+                final byte[] data = block;
+                originalLength += data.length;
+                blockCount++;
+                pending.add(pool.submit(() -> BlockCodec.encodeTyped(data, 0, data.length, code, streams)));
+                if (pending.size() >= window)
+                {
+                    offset = writeBlock(await(pending.poll()), out, index, offset);
+                }
+            }
+            while (!pending.isEmpty())
+            {
+                offset = writeBlock(await(pending.poll()), out, index, offset);
+            }
+
+            indexBytes.writeTo(out);
+            out.writeLong(originalLength);
+            out.writeLong(offset);
+            out.writeInt(blockCount);
+            out.writeInt(MAGIC);
+        }
+    }
+
+    /**
+     * Returns the longest code length for the blocks: interleaved blocks keep
+     * every code within one lookup of the fast decoding loop.
+     *
+     * @return the longest code length in bits
+     */
+    private int maxCodeLength()
+    {
+        return streams == 1 ? MAX_CODE_LENGTH : InterleavedCodec.MAX_CODE_LENGTH;
+    }
+
+    /**
+     * Adds the byte frequencies of every block of a file, counting the blocks
+     * in parallel.
+     *
+     * @param inputName the file to count
+     * @return the byte histogram of the file
+     * @throws IOException if the file cannot be read
+     */
+    private long[] countFile(String inputName) throws IOException
+    {
+        long[] counts = new long[FrequencyCounter.BYTE_SYMBOLS];
+        try (InputStream in = new FileInputStream(inputName))
+        {
+            ArrayDeque<Future<long[]>> pending = new ArrayDeque<>();
+            int window = 2 * pool.getParallelism();
+            byte[] block;
+            while ((block = readBlock(in)) != null)
+            {
+                final byte[] data = block;
+                pending.add(pool.submit(() -> BlockCodec.count(data, 0, data.length)));
+                if (pending.size() >= window)
+                {
+                    addCounts(counts, await(pending.poll()));
+                }
+            }
+            while (!pending.isEmpty())
+            {
+                addCounts(counts, await(pending.poll()));
+            }
+        }
+        return counts;
+    }
+
+    private static void addCounts(long[] total, long[] counts)
+    {
+        for (int i = 0; i < total.length; i++)
+        {
+            total[i] += counts[i];
+        }
+    }
+
+    /**
+     * Writes an encoded block after its type byte and records it in the
+     * index.
+     *
+     * @return the file offset just past the block
+     */
+    private static long writeBlock(BlockCodec.EncodedBlock block, DataOutputStream out,
+            DataOutputStream index, long offset) throws IOException
+    {
+        out.writeByte(block.type.ordinal());
+        out.write(block.bytes, block.offset, block.length);
+        index.writeLong(offset);
+        index.writeLong(8 + block.bitLength);
+        index.writeInt(block.symbolCount);
+        return offset + 1 + block.length;
+    }
+
+    /**
+     * Reads the next block of the input.
+     *
+     * @return the block, shorter than the block size only at the end of the
+     * input, or {@code null} if the input is exhausted
+     */
+    private byte[] readBlock(InputStream in) throws IOException
+    {
+        byte[] block = in.readNBytes(blockSize);
+        return block.length == 0 ? null : block;
+    }
+
+    /**
+     * Waits for a block task and rethrows its failure as an IOException.
+     *
+     * @param future the task
+     * @return the result of the task
+     * @throws IOException if the task failed or the wait was interrupted
+     */
+    static <T> T await(Future<T> future) throws IOException
+    {
+        try
+        {
+            return future.get();
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a block");
+        } catch (ExecutionException e)
+        {
+            // A ForkJoinPool task's checked exception arrives wrapped in RuntimeExceptions
+            Throwable cause = e.getCause();
+            while (cause instanceof RuntimeException && cause.getCause() != null)
+            {
+                cause = cause.getCause();
+            }
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            throw new IOException("Block task failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package collinsworth_Project4_2015;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The header, index and trailer of a block container written by
+ * {@link BlockEncoder}, with the means to decode any one block on its own.
+ * Blocks are read with positional channel reads and the shared table decoder
+ * is never modified, so different threads can decode different blocks of one
+ * container at the same time.
+ *
+ * @author Tobyn Collinsworth
+ */
+public class BlockIndex
+{
+
+    /**
+     * How code tables are shared between the blocks
+     */
+    private final BlockEncoder.TableMode tableMode;
+
+    /**
+     * The decoder for the shared table, or {@code null} for per-block tables
+     */
+    private final TableDecoder sharedDecoder;
+
+    /**
+     * Number of bitstreams of each Huffman block
+     */
+    private final int streams;
+
+    /**
+     * File offset of each block
+     */
+    private final long[] offsets;
+
+    /**
+     * Number of encoded bits of each block, including its type byte and any
+     * block table
+     */
+    private final long[] bitLengths;
+
+    /**
+     * Number of bytes each block decodes to
+     */
+    private final int[] symbolCounts;
+
+    /**
+     * Position of each block in the decoded output
+     */
+    private final long[] starts;
+
+    /**
+     * Length of the decoded output
+     */
+    private final long originalLength;
+
+    private BlockIndex(BlockEncoder.TableMode tableMode, TableDecoder sharedDecoder, int streams,
+            long[] offsets, long[] bitLengths, int[] symbolCounts, long originalLength)
+    {
+        this.tableMode = tableMode;
+        this.sharedDecoder = sharedDecoder;
+        this.streams = streams;
+        this.offsets = offsets;
+        this.bitLengths = bitLengths;
+        this.symbolCounts = symbolCounts;
+        this.originalLength = originalLength;
+        starts = new long[symbolCounts.length];
+        for (int i = 1; i < symbolCounts.length; i++)
+        {
+            starts[i] = starts[i - 1] + symbolCounts[i - 1];
+        }
+    }
+
+    /**
+     * Reads the header, trailer and index of a block container.
+     *
+     * @param channel the container file
+     * @return the index of the container
+     * @throws IOException if the file cannot be read or is not a valid
+     * container
+     */
+    public static BlockIndex read(FileChannel channel) throws IOException
+    {
+        long fileLength = channel.size();
+        if (fileLength < BlockEncoder.HEADER_BYTES + BlockEncoder.TRAILER_BYTES)
+        {
+            throw new IOException("Not a block container: file too short");
+        }
+        ByteBuffer trailer = readFully(channel, fileLength - BlockEncoder.TRAILER_BYTES,
+                BlockEncoder.TRAILER_BYTES);
+        long originalLength = trailer.getLong();
+        long indexOffset = trailer.getLong();
+        int blockCount = trailer.getInt();
+        if (trailer.getInt() != BlockEncoder.MAGIC || blockCount < 0 || indexOffset < 0
+                || indexOffset + (long) blockCount * BlockEncoder.INDEX_ENTRY_BYTES
+                != fileLength - BlockEncoder.TRAILER_BYTES)
+        {
+            throw new IOException("Not a block container or corrupt trailer");
+        }
+
+        ByteBuffer header = readFully(channel, 0, BlockEncoder.HEADER_BYTES);
+        if (header.getInt() != BlockEncoder.MAGIC)
+        {
+            throw new IOException("Not a block container");
+        }
+        if (header.get() != BlockEncoder.TYPED_VERSION)
+        {
+            throw new IOException("Unsupported block container version");
+        }
+        int mode = header.get();
+        if (mode < 0 || mode >= BlockEncoder.TableMode.values().length)
+        {
+            throw new IOException("Corrupt block container: table mode " + mode);
+        }
+        BlockEncoder.TableMode tableMode = BlockEncoder.TableMode.values()[mode];
+        header.getInt(); // block size, only needed by the encoder
+        int streams = header.get();
+        if (streams != 1 && streams != InterleavedCodec.STREAMS)
+        {
+            throw new IOException("Corrupt block container: " + streams + " streams per block");
+        }
+
+        TableDecoder sharedDecoder = null;
+        if (tableMode == BlockEncoder.TableMode.SHARED)
+        {
+            int tableLength = readFully(channel, BlockEncoder.HEADER_BYTES, 4).getInt();
+            if (tableLength < 0 || BlockEncoder.HEADER_BYTES + 4 + tableLength > indexOffset)
+            {
+                throw new IOException("Corrupt block container: table length " + tableLength);
+            }
+            if (tableLength > 0)
+            {
+                byte[] table = readFully(channel, BlockEncoder.HEADER_BYTES + 4, tableLength).array();
+                sharedDecoder = CanonicalCode.read(new BitReader(table, 0, 8L * tableLength))
+                        .createDecoder(streams == 1 ? TableDecoder.DEFAULT_LOOKUP_BITS
+                                : InterleavedCodec.MAX_CODE_LENGTH);
+            }
+        }
+
+        ByteBuffer entries = readFully(channel, indexOffset, blockCount * BlockEncoder.INDEX_ENTRY_BYTES);
+        long[] offsets = new long[blockCount];
+        long[] bitLengths = new long[blockCount];
+        int[] symbolCounts = new int[blockCount];
+        long total = 0;
+        for (int i = 0; i < blockCount; i++)
+        {
+            offsets[i] = entries.getLong();
+            bitLengths[i] = entries.getLong();
+            symbolCounts[i] = entries.getInt();
+            if (offsets[i] < 0 || bitLengths[i] < 0 || symbolCounts[i] < 0
+                    || offsets[i] + (bitLengths[i] + 7) / 8 > indexOffset
+                    || (bitLengths[i] + 7) / 8 > Integer.MAX_VALUE)
+            {
+                throw new IOException("Corrupt block container: index entry " + i);
+            }
+            total += symbolCounts[i];
+        }
+        if (total != originalLength)
+        {
+            throw new IOException("Corrupt block container: block sizes do not add up");
+        }
+        return new BlockIndex(tableMode, sharedDecoder, streams, offsets, bitLengths, symbolCounts, originalLength);
+    }
+
+    /**
+     * Reads bytes at a position of a channel without moving its file pointer.
+     *
+     * @param channel the channel to read
+     * @param position the file offset to read from
+     * @param length the number of bytes to read
+     * @return a buffer holding the bytes, positioned at its start
+     * @throws IOException if the bytes cannot be read
+     */
+    static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+            {
+                throw new EOFException("Unexpected end of file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Reads and decodes one block.
+     *
+     * @param channel the container file
+     * @param block the index of the block
+     * @return the decoded bytes of the block
+     * @throws IOException if the block cannot be read or is corrupt
+     */
+    public byte[] decodeBlock(FileChannel channel, int block) throws IOException
+    {
+        byte[] bytes = readFully(channel, offsets[block], (int) ((bitLengths[block] + 7) / 8)).array();
+        byte[] out = new byte[symbolCounts[block]];
+        if (out.length > 0 && tableMode == BlockEncoder.TableMode.SHARED && sharedDecoder == null
+                && bytes.length > 0 && bytes[0] == BlockCodec.BlockType.HUFFMAN.ordinal())
+        {
+            throw new IOException("Corrupt block container: block " + block + " has no code table");
+        }
+        BlockCodec.decodeTyped(bytes, bitLengths[block], sharedDecoder, streams, out, 0, out.length);
+        return out;
+    }
+
+    /**
+     * Returns the number of blocks.
+     *
+     * @return the number of blocks
+     */
+    public int blockCount()
+    {
+        return offsets.length;
+    }
+
+    /**
+     * Returns the position of a block in the decoded output.
+     *
+     * @param block the index of the block
+     * @return the offset of the first byte of the block
+     */
+    public long blockStart(int block)
+    {
+        return starts[block];
+    }
+
+    /**
+     * Returns the length of the decoded output.
+     *
+     * @return the number of decoded bytes
+     */
+    public long originalLength()
+    {
+        return originalLength;
+    }
+}
@@ -0,0 +1,304 @@
+package collinsworth_Project4_2015;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Binary-safe Huffman coding of whole files over the byte alphabet.
+ * {@link HuffmanTree} reads characters through a charset, so it can only
+ * round-trip text; this coder reads and writes raw bytes, so any file, text
+ * or binary, comes back exactly as it was. With only 256 possible symbols
+ * every table is a fixed-size array indexed by the byte value: the
+ * histogram, the code bits and lengths used by the encoder and the
+ * {@link TableDecoder} used by the decoder. There is no hashing and no
+ * per-symbol object.
+ * <p>
+ * File layout (big-endian): int magic "HUF8", byte version, long original
+ * length, long bit length, then that many bits: the code table
+ * ({@link CanonicalCode#write}) followed by the codes, padded to a whole
+ * byte. An empty file has no table and a bit length of zero.
+ * <p>
+ * A {@link CheckpointIndex}, written while encoding or built later, lets
+ * any range of the file be decoded without decoding the bytes before it.
+ *
+ * @author Tobyn Collinsworth
+ */
+public class ByteHuffman
+{
+
+    /**
+     * Identifies a byte-coded file, "HUF8"
+     */
+    public static final int MAGIC = 0x48554638;
+
+    /**
+     * Version of the file layout
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Longest code length used, keeping the decoder table small
+     */
+    public static final int MAX_CODE_LENGTH = BlockCodec.MAX_CODE_LENGTH;
+
+    /**
+     * Size in bytes of the header before the bits
+     */
+    static final int HEADER_BYTES = 4 + 1 + 8 + 8;
+
+    private ByteHuffman()
+    {
+    }
+
+    /**
+     * Compresses a file. The file is read twice, once to count the bytes and
+     * once to encode them.
+     *
+     * @param inputName the file to compress
+     * @param outputName the file to create
+     * @throws IOException if a file cannot be read or written, or the input
+     * changes between the two passes
+     */
+    public static void encodeFile(String inputName, String outputName) throws IOException
+    {
+        encodeFile(inputName, outputName, new CompressionMetrics(inputName));
+    }
+
+    /**
+     * Compresses a file, recording counters and timings.
+     *
+     * @param inputName the file to compress
+     * @param outputName the file to create
+     * @param metrics the metrics to record into
+     * @throws IOException if a file cannot be read or written, or the input
+     * changes between the two passes
+     */
+    public static void encodeFile(String inputName, String outputName, CompressionMetrics metrics)
+            throws IOException
+    {
+        encode(inputName, outputName, metrics, 0);
+    }
+
+    /**
+     * Compresses a file and writes a {@link CheckpointIndex} next to it, so
+     * any range of the file can later be decoded without decoding
+     * everything before it.
+     *
+     * @param inputName the file to compress
+     * @param outputName the file to create
+     * @param indexName the index file to create
+     * @param interval the number of input bytes between checkpoints
+     * @throws IOException if a file cannot be read or written, or the input
+     * changes between the two passes
+     */
+    public static void encodeFile(String inputName, String outputName, String indexName, int interval)
+            throws IOException
+    {
+        if (interval < 1)
+        {
+            throw new IllegalArgumentException("Checkpoint interval must be positive");
+        }
+        CompressionMetrics metrics = new CompressionMetrics(inputName);
+        long[] checkpoints = encode(inputName, outputName, metrics, interval);
+        new CheckpointIndex(interval, metrics.getBytesIn(), checkpoints).save(indexName);
+    }
+
+    /**
+     * Compresses a file, recording the bit offset of every
+     * {@code interval}-th byte if asked to.
+     *
+     * @param interval the number of bytes between checkpoints, or 0 for none
+     * @return the bit offset of the code of each checkpoint byte, or
+     * {@code null} if {@code interval} is 0
+     */
+    private static long[] encode(String inputName, String outputName, CompressionMetrics metrics, int interval)
+            throws IOException
+    {
+        long[] counts;
+        CompressionMetrics.Timer countTimer = metrics.start(CompressionMetrics.Phase.COUNT);
+        try (InputStream in = new FileInputStream(inputName))
+        {
+            counts = FrequencyCounter.countBytes(in);
+        } finally
+        {
+            countTimer.stop();
+        }
+        long length = 0;
+        for (long count : counts)
+        {
+            length += count;
+        }
+        CanonicalCode code;
+        CompressionMetrics.Timer buildTimer = metrics.start(CompressionMetrics.Phase.TREE_BUILD);
+        try
+        {
+            code = CanonicalCode.fromFrequencies(counts, MAX_CODE_LENGTH);
+        } finally
+        {
+            buildTimer.stop();
+        }
+
+        // Flat copies of the code for the encoding loop
+        long[] codeBits = new long[FrequencyCounter.BYTE_SYMBOLS];
+        int[] codeLengths = new int[FrequencyCounter.BYTE_SYMBOLS];
+        long tableBits = 0;
+        long bitLength = 0;
+        CompressionMetrics.Timer codeTimer = metrics.start(CompressionMetrics.Phase.CODE_ASSIGNMENT);
+        try
+        {
+            if (code != null)
+            {
+                BitWriter table = new BitWriter(64);
+                code.write(table);
+                tableBits = table.bitLength();
+                bitLength = tableBits;
+                for (int b = 0; b < codeBits.length; b++)
+                {
+                    codeLengths[b] = code.getLength(b);
+                    if (codeLengths[b] > 0)
+                    {
+                        codeBits[b] = code.getCode(b);
+                        bitLength += counts[b] * codeLengths[b];
+                        metrics.addSymbol(counts[b], codeLengths[b]);
+                    }
+                }
+            }
+        } finally
+        {
+            codeTimer.stop();
+        }
+
+        long[] checkpoints = null;
+        if (interval > 0)
+        {
+            checkpoints = new long[CheckpointIndex.checkpointCount(length, interval)];
+            checkpoints[0] = tableBits;
+        }
+        CompressionMetrics.Timer encodeTimer = metrics.start(CompressionMetrics.Phase.ENCODE);
+        try (InputStream in = new FileInputStream(inputName);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(outputName), FrequencyCounter.BUFFER_SIZE)))
+        {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(length);
+            out.writeLong(bitLength);
+            metrics.addSizes(length, HEADER_BYTES + (bitLength + 7) / 8, length, bitLength - tableBits);
+            if (code == null)
+            {
+                return checkpoints;
+            }
+            StreamBitWriter bits = new StreamBitWriter(out);
+            code.write(bits);
+            byte[] buffer = new byte[FrequencyCounter.BUFFER_SIZE];
+            long position = 0;
+            int n;
+            while ((n = in.read(buffer)) != -1)
+            {
+                for (int i = 0; i < n; i++, position++)
+                {
+                    if (checkpoints != null && position % interval == 0 && position < length)
+                    {
+                        checkpoints[(int) (position / interval)] = bits.bitLength();
+                    }
+                    int b = buffer[i] & 0xFF;
+                    if (codeLengths[b] == 0)
+                    {
+                        throw new IOException("Input changed while it was being encoded");
+                    }
+                    bits.writeBits(codeBits[b], codeLengths[b]);
+                }
+            }
+            if (bits.bitLength() != bitLength)
+            {
+                throw new IOException("Input changed while it was being encoded");
+            }
+            bits.finish();
+        } finally
+        {
+            encodeTimer.stop();
+        }
+        return checkpoints;
+    }
+
+    /**
+     * Recreates a file written by {@link #encodeFile}.
+     *
+     * @param inputName the compressed file
+     * @param outputName the file to recreate
+     * @throws IOException if a file cannot be read or written, or the
+     * compressed file is corrupt
+     */
+    public static void decodeFile(String inputName, String outputName) throws IOException
+    {
+        decodeFile(inputName, outputName, new CompressionMetrics(inputName));
+    }
+
+    /**
+     * Recreates a file written by {@link #encodeFile}, recording the time
+     * spent decoding.
+     *
+     * @param inputName the compressed file
+     * @param outputName the file to recreate
+     * @param metrics the metrics to record into
+     * @throws IOException if a file cannot be read or written, or the
+     * compressed file is corrupt
+     */
+    public static void decodeFile(String inputName, String outputName, CompressionMetrics metrics)
+            throws IOException
+    {
+        CompressionMetrics.Timer decodeTimer = metrics.start(CompressionMetrics.Phase.DECODE);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(inputName), FrequencyCounter.BUFFER_SIZE));
+                OutputStream out = new FileOutputStream(outputName))
+        {
+            if (in.readInt() != MAGIC)
+            {
+                throw new IOException("Not a byte-coded Huffman file: " + inputName);
+            }
+            if (in.readByte() != VERSION)
+            {
+                throw new IOException("Unsupported byte-coded Huffman file version: " + inputName);
+            }
+            long length = in.readLong();
+            long bitLength = in.readLong();
+            // Every code is at least one bit long
+            if (length < 0 || bitLength < length || (length == 0) != (bitLength == 0))
+            {
+                throw new IOException("Corrupt byte-coded Huffman file: " + inputName);
+            }
+            if (length == 0)
+            {
+                return;
+            }
+
+            StreamBitReader bits = new StreamBitReader(in, bitLength);
+            TableDecoder decoder = CanonicalCode.read(bits).createDecoder(TableDecoder.DEFAULT_LOOKUP_BITS);
+            byte[] buffer = new byte[FrequencyCounter.BUFFER_SIZE];
+            for (long remaining = length; remaining > 0;)
+            {
+                int n = (int) Math.min(buffer.length, remaining);
+                for (int i = 0; i < n; i++)
+                {
+                    buffer[i] = (byte) decoder.decodeSymbol(bits);
+                }
+                out.write(buffer, 0, n);
+                remaining -= n;
+            }
+            if (bits.hasMoreBits())
+            {
+                throw new IOException("Corrupt byte-coded Huffman file: extra bits after the last byte");
+            }
+        } finally
+        {
+            decodeTimer.stop();
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package collinsworth_Project4_2015;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A canonical Huffman code: the code of every symbol is derived from the code
+ * lengths alone. Symbols are ordered by code length and then by value, and
+ * each one receives the next code in that order, so the table written to a
+ * file only needs the symbols and their lengths and any decoder can rebuild
+ * the exact same codes (or lookup tables) without a pointer tree.
+ * <p>
+ * The table header is written as bits:
+ * <ul>
+ * <li>16 bits: the magic value {@code 'H' 'C'}</li>
+ * <li>6 bits: the longest code length</li>
+ * <li>the number of symbols, Elias gamma coded</li>
+ * <li>for each symbol in increasing order: the gap from the previous symbol
+ * (Elias gamma coded, the first gap counted from -1), followed by its code
+ * length in just enough bits to hold the longest length</li>
+ * </ul>
+ * Typical text alphabets need only a few tens of bytes of header.
+ *
+ * @author Tobyn Collinsworth
+ */
+public class CanonicalCode
+{
+
+    /**
+     * Marks the start of a canonical code table
+     */
+    private static final int MAGIC = 0x4843;
+
+    /**
+     * Number of bits used to store the longest code length
+     */
+    private static final int MAX_LENGTH_BITS = 6;
+
+    /**
+     * Symbols in canonical order (by code length, then by value)
+     */
+    private final int[] symbols;
+
+    /**
+     * Code length of each symbol, parallel to {@code symbols}
+     */
+    private final int[] lengths;
+
+    /**
+     * Code bits of each symbol, right-aligned, parallel to {@code symbols}
+     */
+    private final long[] codes;
+
+    /**
+     * Code bits indexed by symbol value, for encoding
+     */
+    private final long[] codeBySymbol;
+
+    /**
+     * Code length indexed by symbol value, 0 for symbols without a code
+     */
+    private final byte[] lengthBySymbol;
+
+    /**
+     * Builds the canonical code for a set of symbols and their code lengths.
+     * The arrays are parallel and need not be sorted.
+     *
+     * @param symbols the symbols, each non-negative and distinct
+     * @param lengths the code length of each symbol, 1 to
+     * {@link BitStream#MAX_BITS}
+     */
+    public CanonicalCode(int[] symbols, int[] lengths)
+    {
+        if (symbols.length == 0 || symbols.length != lengths.length)
+        {
+            throw new IllegalArgumentException("A code needs one length for each of at least one symbol");
+        }
+        // Sort on a packed (length, symbol) key to get the canonical order
+        long[] keys = new long[symbols.length];
+        int maxSymbol = 0;
+        for (int i = 0; i < symbols.length; i++)
+        {
+            if (symbols[i] < 0 || lengths[i] < 1 || lengths[i] > BitStream.MAX_BITS)
+            {
+                throw new IllegalArgumentException("Invalid code length " + lengths[i]
+                        + " for symbol " + symbols[i]);
+            }
+            keys[i] = (long) lengths[i] << 32 | symbols[i];
+            maxSymbol = Math.max(maxSymbol, symbols[i]);
+        }
+        Arrays.sort(keys);
+
+        this.symbols = new int[keys.length];
+        this.lengths = new int[keys.length];
+        this.codes = new long[keys.length];
+        codeBySymbol = new long[maxSymbol + 1];
+        lengthBySymbol = new byte[maxSymbol + 1];
+
+        // Each code is one more than the previous one, shifted left when the
+        // code length grows
+        long code = 0;
+        for (int i = 0; i < keys.length; i++)
+        {
+            int symbol = (int) keys[i];
+            int length = (int) (keys[i] >>> 32);
+            if (lengthBySymbol[symbol] != 0)
+            {
+                throw new IllegalArgumentException("Duplicate symbol " + symbol);
+            }
+            if (i > 0)
+            {
+                code = (code + 1) << (length - this.lengths[i - 1]);
+            }
+            if (code >>> length != 0)
+            {
+                throw new IllegalArgumentException("Code lengths are over-subscribed");
+            }
+            this.symbols[i] = symbol;
+            this.lengths[i] = length;
+            this.codes[i] = code;
+            codeBySymbol[symbol] = code;
+            lengthBySymbol[symbol] = (byte) length;
+        }
+    }
+
+    /**
+     * Builds the optimal canonical code for a histogram, with no code longer
+     * than {@code maxLength} bits. Symbols with a zero count get no code.
+     *
+     * @param frequencies the count of each symbol, indexed by symbol
+     * @param maxLength the longest code length allowed
+     * @return the code, or {@code null} if every count is zero
+     */
+    public static CanonicalCode fromFrequencies(long[] frequencies, int maxLength)
+    {
+        int count = 0;
+        for (long frequency : frequencies)
+        {
+            if (frequency != 0)
+            {
+                count++;
+            }
+        }
+        if (count == 0)
+        {
+            return null;
+        }
+        int[] symbols = new int[count];
+        long[] weights = new long[count];
+        count = 0;
+        for (int symbol = 0; symbol < frequencies.length; symbol++)
+        {
+            if (frequencies[symbol] != 0)
+            {
+                symbols[count] = symbol;
+                weights[count++] = frequencies[symbol];
+            }
+        }
+        return new CanonicalCode(symbols, FlatHuffmanCode.codeLengths(weights, maxLength));
+    }
+
+    /**
+     * Reads a code table written by {@link #write}.
+     *
+     * @param in the bitstream positioned at the start of the table
+     * @return the canonical code described by the table
+     * @throws IOException if the table is missing, corrupt or truncated
+     */
+    public static CanonicalCode read(BitInput in) throws IOException
+    {
+        if (in.readBits(16) != MAGIC)
+        {
+            throw new IOException("Not a canonical Huffman code table");
+        }
+        int maxLength = in.readBits(MAX_LENGTH_BITS);
+        if (maxLength < 1 || maxLength > BitStream.MAX_BITS)
+        {
+            throw new IOException("Corrupt code table: longest code is " + maxLength + " bits");
+        }
+        int lengthWidth = 32 - Integer.numberOfLeadingZeros(maxLength);
+        long count = readGamma(in);
+        if (count > Character.MAX_VALUE + 1)
+        {
+            throw new IOException("Corrupt code table: " + count + " symbols");
+        }
+        int[] symbols = new int[(int) count];
+        int[] lengths = new int[(int) count];
+        long symbol = -1;
+        for (int i = 0; i < count; i++)
+        {
+            symbol += readGamma(in);
+            lengths[i] = in.readBits(lengthWidth);
+            // Symbols are chars at most; a larger one would size the symbol arrays from corrupt data
+            if (symbol > Character.MAX_VALUE || lengths[i] < 1 || lengths[i] > maxLength)
+            {
+                throw new IOException("Corrupt code table entry " + i);
+            }
+            symbols[i] = (int) symbol;
+        }
+        try
+        {
+            return new CanonicalCode(symbols, lengths);
+        } catch (IllegalArgumentException e)
+        {
+            throw new IOException("Corrupt code table: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the code table so that {@link #read} can rebuild this code.
+     *
+     * @param out the bitstream to write the table to
+     * @throws IOException if the table cannot be written
+     */
+    public void write(BitOutput out) throws IOException
+    {
+        int maxLength = maxLength();
+        int lengthWidth = 32 - Integer.numberOfLeadingZeros(maxLength);
+        out.writeBits(MAGIC, 16);
+        out.writeBits(maxLength, MAX_LENGTH_BITS);
+        writeGamma(out, symbols.length);
+        int previous = -1;
+        for (int symbol = 0; symbol < lengthBySymbol.length; symbol++)
+        {
+            if (lengthBySymbol[symbol] != 0)
+            {
+                writeGamma(out, symbol - previous);
+                out.writeBits(lengthBySymbol[symbol], lengthWidth);
+                previous = symbol;
+            }
+        }
+    }
+
+    /**
+     * Writes a positive value as an Elias gamma code: one less zero than the
+     * number of significant bits, then the significant bits.
+     *
+     * @param out the bitstream to write to
+     * @param value the value, at least 1 and below 2^29
+     * @throws IOException if the bits cannot be written
+     */
+    private static void writeGamma(BitOutput out, long value) throws IOException
+    {
+        int bits = 64 - Long.numberOfLeadingZeros(value);
+        out.writeBits(value, 2 * bits - 1);
+    }
+
+    /**
+     * Reads an Elias gamma code written by {@link #writeGamma}.
+     *
+     * @param in the bitstream to read from
+     * @return the value read
+     * @throws IOException if the code is corrupt or truncated
+     */
+    private static long readGamma(BitInput in) throws IOException
+    {
+        int zeros = 0;
+        while (in.readBits(1) == 0)
+        {
+            if (++zeros > 28)
+            {
+                throw new IOException("Corrupt code table: gamma code too long");
+            }
+        }
+        return (1L << zeros) | in.readLongBits(zeros);
+    }
+
+    /**
+     * Writes the code of a symbol to the bitstream.
+     *
+     * @param out the bitstream to write to
+     * @param symbol a symbol that has a code
+     * @throws IOException if the bits cannot be written or the symbol has no
+     * code
+     */
+    public void encodeSymbol(BitOutput out, int symbol) throws IOException
+    {
+        if (symbol >= lengthBySymbol.length || lengthBySymbol[symbol] == 0)
+        {
+            throw new IOException("Symbol " + symbol + " has no code");
+        }
+        out.writeBits(codeBySymbol[symbol], lengthBySymbol[symbol]);
+    }
+
+    /**
+     * Returns the code length of a symbol.
+     *
+     * @param symbol the symbol
+     * @return its code length, or 0 if the symbol has no code
+     */
+    public int getLength(int symbol)
+    {
+        return symbol >= 0 && symbol < lengthBySymbol.length ? lengthBySymbol[symbol] : 0;
+    }
+
+    /**
+     * Returns the code bits of a symbol, right-aligned.
+     *
+     * @param symbol a symbol that has a code
+     * @return its code bits
+     */
+    public long getCode(int symbol)
+    {
+        return codeBySymbol[symbol];
+    }
+
+    /**
+     * Returns the number of symbols that have a code.
+     *
+     * @return the number of symbols
+     */
+    public int symbolCount()
+    {
+        return symbols.length;
+    }
+
+    /**
+     * Returns the longest code length.
+     *
+     * @return the longest code length in bits
+     */
+    public int maxLength()
+    {
+        return lengths[lengths.length - 1];
+    }
+
+    /**
+     * Builds a table decoder for this code.
+     *
+     * @param lookupBits the number of bits to resolve per table lookup
+     * @return the decoder
+     */
+    public TableDecoder createDecoder(int lookupBits)
+    {
+        return new TableDecoder(symbols, codes, lengths, lookupBits);
+    }
+}
@@ -0,0 +1,128 @@
+package collinsworth_Project4_2015;
+
+import java.util.Arrays;
+
+/**
+ * Counts symbols of an arbitrary alphabet (chars or code points) in a
+ * primitive open-addressing hash table: the keys and counts live in two
+ * parallel arrays probed linearly, so counting a symbol allocates nothing and
+ * never follows a chain of node references.
+ *
+ * @author Tobyn Collinsworth
+ */
+public class CharFrequencyMap
+{
+
+    // Marks an unused slot; symbols are never negative
+    private static final int EMPTY = -1;
+
+    private int[] keys;
+    private long[] counts;
+    private int size = 0;
+    private int shift;      // 32 - log2(capacity), for Fibonacci hashing
+
+    public CharFrequencyMap()
+    {
+        this(64);
+    }
+
+    // Create a map with room for the given number of distinct symbols before it has to grow
+    public CharFrequencyMap(int expectedSymbols)
+    {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSymbols) * 2 - 1) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity)
+    {
+        keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        counts = new long[capacity];
+        shift = 32 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    // Find the slot holding the key, or the empty slot where it belongs
+    private int slot(int key)
+    {
+        int mask = keys.length - 1;
+        int i = (key * 0x9E3779B9) >>> shift;
+        while (keys[i] != key && keys[i] != EMPTY)
+        {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    // Count one more occurrence of the symbol
+    public void increment(int key)
+    {
+        add(key, 1);
+    }
+
+    // Count n more occurrences of the symbol
+    public void add(int key, long n)
+    {
+        if (key < 0)
+        {
+            throw new IllegalArgumentException("Symbols must not be negative: " + key);
+        }
+        int i = slot(key);
+        if (keys[i] == EMPTY)
+        {
+            // Keep the table at most half full so probe sequences stay short
+            if (2 * (size + 1) > keys.length)
+            {
+                grow();
+                i = slot(key);
+            }
+            keys[i] = key;
+            size++;
+        }
+        counts[i] += n;
+    }
+
+    private void grow()
+    {
+        int[] oldKeys = keys;
+        long[] oldCounts = counts;
+        allocate(keys.length * 2);
+        for (int j = 0; j < oldKeys.length; j++)
+        {
+            if (oldKeys[j] != EMPTY)
+            {
+                int i = slot(oldKeys[j]);
+                keys[i] = oldKeys[j];
+                counts[i] = oldCounts[j];
+            }
+        }
+    }
+
+    // Returns the number of times the symbol was counted
+    public long get(int key)
+    {
+        int i = slot(key);
+        return keys[i] == EMPTY ? 0 : counts[i];
+    }
+
+    // Returns the number of distinct symbols counted
+    public int size()
+    {
+        return size;
+    }
+
+    // Returns the distinct symbols counted, in increasing order
+    public int[] keys()
+    {
+        int[] result = new int[size];
+        int n = 0;
+        for (int key : keys)
+        {
+            if (key != EMPTY)
+            {
+                result[n++] = key;
+            }
+        }
+        Arrays.sort(result);
+        return result;
+    }
+}
@@ -0,0 +1,361 @@
+package collinsworth_Project4_2015;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A sparse index into a file written by {@link ByteHuffman}: the bit offset
+ * of the code of every {@code interval}-th byte. A Huffman file can only be
+ * decoded from the start of a code, and codes have no alignment, so without
+ * an index reading one byte near the end of a file means decoding the whole
+ * file. With one, {@link #readRange} starts at the nearest checkpoint before
+ * the range and decodes at most {@code interval - 1} bytes it does not
+ * need. The code table of the compressed file is read and its decoder built
+ * once, by {@link #load(String, FileChannel)} or by the first range read,
+ * and shared by every later read.
+ * <p>
+ * The index is kept in its own file next to the compressed one, so files
+ * written without an index stay valid and can be indexed later with
+ * {@link #build}. Index layout (big-endian): int magic "HUFX", byte
+ * version, int interval, long original length, int checkpoint count, then
+ * one long bit offset per checkpoint, counted from the start of the bits
+ * (the code table) of the compressed file. The first checkpoint is the end
+ * of the code table.
+ *
+ * @author Tobyn Collinsworth
+ */
+public class CheckpointIndex
+{
+
+    /**
+     * Identifies a checkpoint index, "HUFX"
+     */
+    public static final int MAGIC = 0x48554658;
+
+    /**
+     * Version of the index layout
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Checkpoint interval used when none is given; the index costs 8 bytes
+     * per 64 KB of input
+     */
+    public static final int DEFAULT_INTERVAL = 1 << 16;
+
+    /**
+     * Number of input bytes between checkpoints
+     */
+    private final int interval;
+
+    /**
+     * Length of the original file
+     */
+    private final long length;
+
+    /**
+     * Bit offset of the code of byte {@code k * interval}
+     */
+    private final long[] checkpoints;
+
+    /**
+     * The code of the compressed file, or {@code null} until it is first read
+     */
+    private volatile Code code;
+
+    /**
+     * The code table of a compressed file and the decoder built from it; the
+     * decoder is never modified, so every range read can share it
+     */
+    private static final class Code
+    {
+        final CanonicalCode code;
+        final TableDecoder decoder;
+        final long bitLength;
+
+        Code(CanonicalCode code, TableDecoder decoder, long bitLength)
+        {
+            this.code = code;
+            this.decoder = decoder;
+            this.bitLength = bitLength;
+        }
+    }
+
+    /**
+     * Creates an index.
+     *
+     * @param interval the number of input bytes between checkpoints
+     * @param length the length of the original file
+     * @param checkpoints the bit offset of each checkpoint, as many as
+     * {@link #checkpointCount} gives
+     */
+    CheckpointIndex(int interval, long length, long[] checkpoints)
+    {
+        this.interval = interval;
+        this.length = length;
+        this.checkpoints = checkpoints;
+    }
+
+    /**
+     * Returns the number of checkpoints of a file: one at every multiple of
+     * the interval before its end, and always one at the start.
+     *
+     * @param length the length of the original file
+     * @param interval the number of input bytes between checkpoints
+     * @return the number of checkpoints
+     * @throws IOException if the index would have too many checkpoints
+     */
+    static int checkpointCount(long length, int interval) throws IOException
+    {
+        long count = Math.max(1, (length + interval - 1) / interval);
+        if (count > Integer.MAX_VALUE - 8)
+        {
+            throw new IOException("Checkpoint interval " + interval + " is too small for "
+                    + length + " bytes");
+        }
+        return (int) count;
+    }
+
+    /**
+     * Indexes a file written by {@link ByteHuffman} by decoding it once.
+     *
+     * @param compressedName the compressed file
+     * @param interval the number of input bytes between checkpoints
+     * @return the index
+     * @throws IOException if the file cannot be read or is corrupt
+     */
+    public static CheckpointIndex build(String compressedName, int interval) throws IOException
+    {
+        if (interval < 1)
+        {
+            throw new IllegalArgumentException("Checkpoint interval must be positive");
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(compressedName), FrequencyCounter.BUFFER_SIZE)))
+        {
+            if (in.readInt() != ByteHuffman.MAGIC)
+            {
+                throw new IOException("Not a byte-coded Huffman file: " + compressedName);
+            }
+            if (in.readByte() != ByteHuffman.VERSION)
+            {
+                throw new IOException("Unsupported byte-coded Huffman file version: " + compressedName);
+            }
+            long length = in.readLong();
+            long bitLength = in.readLong();
+            if (length < 0 || bitLength < length || (length == 0) != (bitLength == 0))
+            {
+                throw new IOException("Corrupt byte-coded Huffman file: " + compressedName);
+            }
+            long[] checkpoints = new long[checkpointCount(length, interval)];
+            if (length == 0)
+            {
+                return new CheckpointIndex(interval, 0, checkpoints);
+            }
+            StreamBitReader bits = new StreamBitReader(in, bitLength);
+            TableDecoder decoder = CanonicalCode.read(bits).createDecoder(TableDecoder.DEFAULT_LOOKUP_BITS);
+            for (long position = 0; position < length; position++)
+            {
+                if (position % interval == 0)
+                {
+                    checkpoints[(int) (position / interval)] = bitLength - bits.bitsRemaining();
+                }
+                decoder.decodeSymbol(bits);
+            }
+            return new CheckpointIndex(interval, length, checkpoints);
+        }
+    }
+
+    /**
+     * Saves the index to a file.
+     *
+     * @param fileName the file to create
+     * @throws IOException if the file cannot be written
+     */
+    public void save(String fileName) throws IOException
+    {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(fileName))))
+        {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(interval);
+            out.writeLong(length);
+            out.writeInt(checkpoints.length);
+            for (long checkpoint : checkpoints)
+            {
+                out.writeLong(checkpoint);
+            }
+        }
+    }
+
+    /**
+     * Loads an index saved by {@link #save}.
+     *
+     * @param fileName the index file
+     * @return the index
+     * @throws IOException if the file cannot be read or is not a valid index
+     */
+    public static CheckpointIndex load(String fileName) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(fileName))))
+        {
+            if (in.readInt() != MAGIC)
+            {
+                throw new IOException("Not a checkpoint index: " + fileName);
+            }
+            if (in.readByte() != VERSION)
+            {
+                throw new IOException("Unsupported checkpoint index version: " + fileName);
+            }
+            int interval = in.readInt();
+            long length = in.readLong();
+            int count = in.readInt();
+            if (interval < 1 || length < 0 || count != checkpointCount(length, interval))
+            {
+                throw new IOException("Corrupt checkpoint index: " + fileName);
+            }
+            long[] checkpoints = new long[count];
+            for (int i = 0; i < count; i++)
+            {
+                checkpoints[i] = in.readLong();
+                if (checkpoints[i] < 0 || i > 0 && checkpoints[i] <= checkpoints[i - 1])
+                {
+                    throw new IOException("Corrupt checkpoint index: " + fileName);
+                }
+            }
+            return new CheckpointIndex(interval, length, checkpoints);
+        }
+    }
+
+    /**
+     * Loads an index saved by {@link #save} together with the code table of
+     * the compressed file it belongs to, so no range read has to read the
+     * table or build its decoder.
+     *
+     * @param fileName the index file
+     * @param channel the compressed file the index belongs to
+     * @return the index
+     * @throws IOException if a file cannot be read, the index is not valid,
+     * or the compressed file does not match it
+     */
+    public static CheckpointIndex load(String fileName, FileChannel channel) throws IOException
+    {
+        CheckpointIndex index = load(fileName);
+        index.code = index.readCode(channel);
+        return index;
+    }
+
+    /**
+     * Reads the header and code table of the compressed file and builds the
+     * decoder, checking that the file matches this index.
+     */
+    private Code readCode(FileChannel channel) throws IOException
+    {
+        ByteBuffer header = BlockIndex.readFully(channel, 0, ByteHuffman.HEADER_BYTES);
+        if (header.getInt() != ByteHuffman.MAGIC || header.get() != ByteHuffman.VERSION)
+        {
+            throw new IOException("Not a byte-coded Huffman file");
+        }
+        long fileLength = header.getLong();
+        long bitLength = header.getLong();
+        if (fileLength != length || bitLength <= checkpoints[checkpoints.length - 1])
+        {
+            throw new IOException("Compressed file does not match its checkpoint index");
+        }
+
+        // The code table ends where the first checkpoint starts
+        int tableBytes = (int) ((checkpoints[0] + 7) / 8);
+        byte[] table = BlockIndex.readFully(channel, ByteHuffman.HEADER_BYTES, tableBytes).array();
+        CanonicalCode canonical = CanonicalCode.read(new BitReader(table, 0, checkpoints[0]));
+        return new Code(canonical, canonical.createDecoder(TableDecoder.DEFAULT_LOOKUP_BITS), bitLength);
+    }
+
+    /**
+     * Decodes a range of the original file, starting at the nearest
+     * checkpoint. Reads use positional channel reads, so different threads
+     * can read ranges of one file at the same time.
+     *
+     * @param channel the compressed file this index belongs to; the code
+     * table is read from it on the first read only
+     * @param offset position in the original file of the first byte to read
+     * @param count the number of bytes to read
+     * @return the bytes of the range
+     * @throws IOException if the file cannot be read, is corrupt, or does not
+     * match this index
+     */
+    public byte[] readRange(FileChannel channel, long offset, int count) throws IOException
+    {
+        if (offset < 0 || count < 0 || offset > length - count)
+        {
+            throw new IndexOutOfBoundsException("Range " + offset + "+" + count
+                    + " is outside a file of " + length + " bytes");
+        }
+        byte[] out = new byte[count];
+        if (count == 0)
+        {
+            return out;
+        }
+        // Reading the code twice from two threads at once is harmless: both copies are the same
+        Code fileCode = code;
+        if (fileCode == null)
+        {
+            fileCode = readCode(channel);
+            code = fileCode;
+        }
+        TableDecoder decoder = fileCode.decoder;
+        long bitLength = fileCode.bitLength;
+
+        // Read no more bytes than the longest codes of the symbols decoded could fill
+        int checkpoint = (int) (offset / interval);
+        long skip = offset - (long) checkpoint * interval;
+        long firstByte = checkpoints[checkpoint] / 8;
+        long readBits = Math.min((skip + count) * fileCode.code.maxLength() + checkpoints[checkpoint] % 8,
+                bitLength - 8 * firstByte);
+        if ((readBits + 7) / 8 > Integer.MAX_VALUE - 8)
+        {
+            throw new IOException("Range of " + count + " bytes is too large to read at once");
+        }
+        byte[] data = BlockIndex.readFully(channel, ByteHuffman.HEADER_BYTES + firstByte,
+                (int) ((readBits + 7) / 8)).array();
+        BitReader bits = new BitReader(data, 0, readBits);
+        bits.skipBits((int) (checkpoints[checkpoint] % 8));
+        for (long i = 0; i < skip; i++)
+        {
+            decoder.decodeSymbol(bits);
+        }
+        for (int i = 0; i < count; i++)
+        {
+            out[i] = (byte) decoder.decodeSymbol(bits);
+        }
+        return out;
+    }
+
+    /**
+     * Returns the number of input bytes between checkpoints.
+     *
+     * @return the checkpoint interval
+     */
+    public int getInterval()
+    {
+        return interval;
+    }
+
+    /**
+     * Returns the length of the original file.
+     *
+     * @return the number of bytes the compressed file decodes to
+     */
+    public long getLength()
+    {
+        return length;
+    }
+}
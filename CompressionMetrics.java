@@ -0,0 +1,482 @@
+package collinsworth_Project4_2015;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Counters and timings for one compression job: bytes in and out, the
+ * entropy of the input against the bits per symbol actually achieved, the
+ * code lengths, and the time and heap allocation spent in each
+ * {@link Phase}. The coders record into an instance as they work; callers
+ * read the values back, export them with {@link #toJson}, or publish them as
+ * a JFR event with {@link #commitEvent}.
+ * <p>
+ * Allocation counts come from the JVM's per-thread allocation counter, so
+ * they cover the thread that ran each phase; they are -1 where the JVM does
+ * not provide the counter. All methods are safe to call from several
+ * threads.
+ *
+ * @author Tobyn Collinsworth
+ */
+public class CompressionMetrics
+{
+
+    /**
+     * The timed parts of a job
+     */
+    public enum Phase
+    {
+        COUNT,              // counting symbol frequencies
+        TREE_BUILD,         // building the tree or choosing code lengths
+        CODE_ASSIGNMENT,    // turning the tree or lengths into code tables
+        ENCODE,             // writing the codes
+        DECODE              // reading the codes back
+    }
+
+    /**
+     * Times one phase and records it when stopped; stop it in a
+     * {@code finally} block so a failed phase is still recorded.
+     */
+    public class Timer
+    {
+        private final Phase phase;
+        private final long startNanos;
+        private final long startAllocated;
+
+        private Timer(Phase phase)
+        {
+            this.phase = phase;
+            startAllocated = allocatedBytes();
+            startNanos = System.nanoTime();
+        }
+
+        /**
+         * Stops timing and records the phase.
+         */
+        public void stop()
+        {
+            long nanos = System.nanoTime() - startNanos;
+            long allocated = allocatedBytes();
+            addTime(phase, nanos, startAllocated < 0 ? -1 : allocated - startAllocated);
+        }
+    }
+
+    /**
+     * The JFR event written by {@link #commitEvent}
+     */
+    @Name("collinsworth_Project4_2015.Compression")
+    @Label("Huffman Compression")
+    @Category("Huffman")
+    @Description("Counters and timings of one compression job")
+    static class CompressionEvent extends Event
+    {
+        @Label("Job")
+        String job;
+
+        @Label("Bytes In")
+        @DataAmount
+        long bytesIn;
+
+        @Label("Bytes Out")
+        @DataAmount
+        long bytesOut;
+
+        @Label("Entropy (bits per symbol)")
+        double entropyBitsPerSymbol;
+
+        @Label("Achieved (bits per symbol)")
+        double achievedBitsPerSymbol;
+
+        @Label("Max Code Length")
+        int maxCodeLength;
+
+        @Label("Count Time")
+        @Timespan
+        long countNanos;
+
+        @Label("Tree Build Time")
+        @Timespan
+        long treeBuildNanos;
+
+        @Label("Code Assignment Time")
+        @Timespan
+        long codeAssignmentNanos;
+
+        @Label("Encode Time")
+        @Timespan
+        long encodeNanos;
+
+        @Label("Decode Time")
+        @Timespan
+        long decodeNanos;
+
+        @Label("Allocated")
+        @DataAmount
+        long allocatedBytes;
+    }
+
+    /**
+     * Per-thread allocation counter, or {@code null} if the JVM has none
+     */
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+    private final String job;
+    private final long[] phaseNanos = new long[Phase.values().length];
+    private final long[] phaseAllocated = new long[Phase.values().length];
+    private long bytesIn;
+    private long bytesOut;
+    private long encodedBits;
+    private long encodedSymbols;    // symbols written by the encoders, counted per encode
+    private long symbols;           // symbol occurrences of the code, counted once per code
+    private int distinctSymbols;
+    private double countLogCount;   // sum of c * log2(c) over the symbol counts
+    private long weightedLength;    // sum of count * code length
+    private int maxCodeLength;
+
+    /**
+     * Creates an empty set of metrics.
+     *
+     * @param job a name for the job, such as the input file
+     */
+    public CompressionMetrics(String job)
+    {
+        this.job = job;
+    }
+
+    /**
+     * Starts timing a phase on the current thread.
+     *
+     * @param phase the phase
+     * @return the timer, which records the phase when stopped
+     */
+    public Timer start(Phase phase)
+    {
+        return new Timer(phase);
+    }
+
+    /**
+     * Adds time spent in a phase.
+     *
+     * @param phase the phase
+     * @param nanos the time in nanoseconds
+     * @param allocated the bytes allocated during it, or -1 if unknown
+     */
+    public synchronized void addTime(Phase phase, long nanos, long allocated)
+    {
+        phaseNanos[phase.ordinal()] += nanos;
+        if (phaseAllocated[phase.ordinal()] >= 0)
+        {
+            phaseAllocated[phase.ordinal()] = allocated < 0 ? -1 : phaseAllocated[phase.ordinal()] + allocated;
+        }
+    }
+
+    /**
+     * Records one symbol of the code: how often it occurs and the length of
+     * its code.
+     *
+     * @param count the number of occurrences
+     * @param codeLength the length of its code in bits
+     */
+    public synchronized void addSymbol(long count, int codeLength)
+    {
+        if (count <= 0)
+        {
+            return;
+        }
+        symbols += count;
+        distinctSymbols++;
+        countLogCount += count * log2(count);
+        weightedLength += count * codeLength;
+        maxCodeLength = Math.max(maxCodeLength, codeLength);
+    }
+
+    /**
+     * Records the sizes of an encoded file or stream. Every encode adds to
+     * the totals, so a code used for several files reports them all.
+     *
+     * @param inputBytes the bytes read
+     * @param outputBytes the bytes written
+     * @param symbolCount the number of symbols encoded
+     * @param bits the number of code bits written, excluding any header
+     */
+    public synchronized void addSizes(long inputBytes, long outputBytes, long symbolCount, long bits)
+    {
+        bytesIn += inputBytes;
+        bytesOut += outputBytes;
+        encodedSymbols += symbolCount;
+        encodedBits += bits;
+    }
+
+    /**
+     * Returns the name of the job.
+     *
+     * @return the job name
+     */
+    public String getJob()
+    {
+        return job;
+    }
+
+    /**
+     * Returns the number of bytes read by the encoders.
+     *
+     * @return the input bytes
+     */
+    public synchronized long getBytesIn()
+    {
+        return bytesIn;
+    }
+
+    /**
+     * Returns the number of bytes written by the encoders.
+     *
+     * @return the output bytes
+     */
+    public synchronized long getBytesOut()
+    {
+        return bytesOut;
+    }
+
+    /**
+     * Returns the output size as a fraction of the input size.
+     *
+     * @return bytes out divided by bytes in, or 0 before anything is encoded
+     */
+    public synchronized double getRatio()
+    {
+        return bytesIn == 0 ? 0 : (double) bytesOut / bytesIn;
+    }
+
+    /**
+     * Returns the Shannon entropy of the recorded symbol counts, the fewest
+     * bits per symbol any code for them could average.
+     *
+     * @return the entropy in bits per symbol
+     */
+    public synchronized double getEntropyBitsPerSymbol()
+    {
+        return symbols == 0 ? 0 : log2(symbols) - countLogCount / symbols;
+    }
+
+    /**
+     * Returns the average number of code bits written per symbol.
+     *
+     * @return the encoded bits divided by the symbols encoded
+     */
+    public synchronized double getAchievedBitsPerSymbol()
+    {
+        return encodedSymbols == 0 ? 0 : (double) encodedBits / encodedSymbols;
+    }
+
+    /**
+     * Returns the number of symbol occurrences the code was built from.
+     *
+     * @return the symbol count
+     */
+    public synchronized long getSymbolCount()
+    {
+        return symbols;
+    }
+
+    /**
+     * Returns the number of symbols written by all encodes.
+     *
+     * @return the encoded symbol count
+     */
+    public synchronized long getEncodedSymbolCount()
+    {
+        return encodedSymbols;
+    }
+
+    /**
+     * Returns the number of distinct symbols recorded.
+     *
+     * @return the number of symbols with a code
+     */
+    public synchronized int getDistinctSymbols()
+    {
+        return distinctSymbols;
+    }
+
+    /**
+     * Returns the longest code length.
+     *
+     * @return the longest code length in bits
+     */
+    public synchronized int getMaxCodeLength()
+    {
+        return maxCodeLength;
+    }
+
+    /**
+     * Returns the code length averaged over the symbol occurrences.
+     *
+     * @return the average code length in bits
+     */
+    public synchronized double getAverageCodeLength()
+    {
+        return symbols == 0 ? 0 : (double) weightedLength / symbols;
+    }
+
+    /**
+     * Returns the time spent in a phase.
+     *
+     * @param phase the phase
+     * @return the time in nanoseconds
+     */
+    public synchronized long getNanos(Phase phase)
+    {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    /**
+     * Returns the heap allocated during a phase.
+     *
+     * @param phase the phase
+     * @return the allocated bytes, or -1 if unknown
+     */
+    public synchronized long getAllocatedBytes(Phase phase)
+    {
+        return phaseAllocated[phase.ordinal()];
+    }
+
+    /**
+     * Returns the heap allocated during all phases.
+     *
+     * @return the allocated bytes, or -1 if unknown
+     */
+    public synchronized long getAllocatedBytes()
+    {
+        long total = 0;
+        for (long allocated : phaseAllocated)
+        {
+            if (allocated < 0)
+            {
+                return -1;
+            }
+            total += allocated;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the metrics as a JSON object.
+     *
+     * @return the JSON text
+     */
+    public synchronized String toJson()
+    {
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"job\":\"").append(escape(job)).append('"');
+        json.append(",\"bytesIn\":").append(bytesIn);
+        json.append(",\"bytesOut\":").append(bytesOut);
+        json.append(",\"ratio\":").append(number(getRatio()));
+        json.append(",\"symbols\":").append(symbols);
+        json.append(",\"encodedSymbols\":").append(encodedSymbols);
+        json.append(",\"distinctSymbols\":").append(distinctSymbols);
+        json.append(",\"entropyBitsPerSymbol\":").append(number(getEntropyBitsPerSymbol()));
+        json.append(",\"achievedBitsPerSymbol\":").append(number(getAchievedBitsPerSymbol()));
+        json.append(",\"maxCodeLength\":").append(maxCodeLength);
+        json.append(",\"averageCodeLength\":").append(number(getAverageCodeLength()));
+        json.append(",\"phases\":{");
+        for (Phase phase : Phase.values())
+        {
+            json.append(phase.ordinal() == 0 ? "" : ",");
+            json.append('"').append(phase.name().toLowerCase(Locale.ROOT)).append("\":{");
+            json.append("\"nanos\":").append(phaseNanos[phase.ordinal()]);
+            json.append(",\"allocatedBytes\":").append(phaseAllocated[phase.ordinal()]);
+            json.append('}');
+        }
+        json.append("},\"allocatedBytes\":").append(getAllocatedBytes());
+        return json.append('}').toString();
+    }
+
+    /**
+     * Writes the metrics as a JFR event, if a recording is enabled for it.
+     */
+    public synchronized void commitEvent()
+    {
+        CompressionEvent event = new CompressionEvent();
+        if (!event.isEnabled())
+        {
+            return;
+        }
+        event.job = job;
+        event.bytesIn = bytesIn;
+        event.bytesOut = bytesOut;
+        event.entropyBitsPerSymbol = getEntropyBitsPerSymbol();
+        event.achievedBitsPerSymbol = getAchievedBitsPerSymbol();
+        event.maxCodeLength = maxCodeLength;
+        event.countNanos = phaseNanos[Phase.COUNT.ordinal()];
+        event.treeBuildNanos = phaseNanos[Phase.TREE_BUILD.ordinal()];
+        event.codeAssignmentNanos = phaseNanos[Phase.CODE_ASSIGNMENT.ordinal()];
+        event.encodeNanos = phaseNanos[Phase.ENCODE.ordinal()];
+        event.decodeNanos = phaseNanos[Phase.DECODE.ordinal()];
+        event.allocatedBytes = getAllocatedBytes();
+        event.commit();
+    }
+
+    @Override
+    public String toString()
+    {
+        return toJson();
+    }
+
+    private static double log2(double x)
+    {
+        return Math.log(x) / Math.log(2);
+    }
+
+    // A JSON number; JSON has no NaN or infinity
+    private static String number(double value)
+    {
+        return Double.isFinite(value) ? String.format(Locale.ROOT, "%.6f", value) : "null";
+    }
+
+    private static String escape(String text)
+    {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (char c : text.toCharArray())
+        {
+            if (c == '"' || c == '\\')
+            {
+                escaped.append('\\').append(c);
+            }
+            else if (c < 0x20)
+            {
+                escaped.append(String.format("\\u%04x", (int) c));
+            }
+            else
+            {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    // Bytes allocated so far by the current thread, or -1 if unknown
+    private static long allocatedBytes()
+    {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean()
+    {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported())
+        {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            threads.setThreadAllocatedMemoryEnabled(true);
+            return threads;
+        }
+        return null;
+    }
+}
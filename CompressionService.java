@@ -0,0 +1,198 @@
+package collinsworth_Project4_2015;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compresses and decompresses many independent payloads in parallel with
+ * one shared {@link HuffmanCodec}. Work runs on a fixed number of worker
+ * threads, each of which keeps the codec's scratch buffers from one payload
+ * to the next. The queue of waiting payloads is bounded: when it is full
+ * the submitting thread does the work itself, which slows producers down to
+ * the speed of the workers instead of letting the queue grow without limit.
+ * Submitting to a closed service throws {@link RejectedExecutionException}.
+ * <p>
+ * A payload that fails only fails its own task: the exception is reported
+ * by its {@link Future}, or rethrown as an {@link IOException} by the batch
+ * methods, and the service keeps running.
+ *
+ * @author Tobyn Collinsworth
+ */
+public class CompressionService implements AutoCloseable
+{
+
+    /**
+     * Number of waiting payloads allowed per worker thread
+     */
+    private static final int QUEUE_PER_THREAD = 16;
+
+    /**
+     * The codec shared by every task
+     */
+    private final HuffmanCodec codec;
+
+    /**
+     * The worker threads and their bounded queue
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Creates a service with one worker thread per processor.
+     *
+     * @param codec the codec shared by every task
+     */
+    public CompressionService(HuffmanCodec codec)
+    {
+        this(codec, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a service.
+     *
+     * @param codec the codec shared by every task
+     * @param threads the number of payloads worked on at once
+     */
+    public CompressionService(HuffmanCodec codec, int threads)
+    {
+        if (threads < 1)
+        {
+            throw new IllegalArgumentException("A service needs at least one thread");
+        }
+        this.codec = codec;
+        AtomicInteger count = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_PER_THREAD * threads),
+                task ->
+                {
+                    Thread thread = new Thread(task, "huffman-service-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (task, pool) ->
+                {
+                    if (pool.isShutdown())
+                    {
+                        throw new RejectedExecutionException("Compression service is closed");
+                    }
+                    task.run();
+                });
+    }
+
+    /**
+     * Compresses a payload on a worker thread.
+     *
+     * @param payload the payload, which must not change until the task ends
+     * @return the future frame
+     */
+    public Future<byte[]> compress(byte[] payload)
+    {
+        return executor.submit(() -> codec.compress(payload));
+    }
+
+    /**
+     * Decompresses a frame on a worker thread.
+     *
+     * @param frame the frame
+     * @return the future payload
+     */
+    public Future<byte[]> decompress(byte[] frame)
+    {
+        return executor.submit(() -> codec.decompress(frame));
+    }
+
+    /**
+     * Compresses payloads in parallel.
+     *
+     * @param payloads the payloads
+     * @return the frames, in the order of the payloads
+     * @throws IOException if any payload fails, or the wait is interrupted
+     */
+    public List<byte[]> compressAll(List<byte[]> payloads) throws IOException
+    {
+        ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>(payloads.size());
+        for (byte[] payload : payloads)
+        {
+            pending.add(compress(payload));
+        }
+        return awaitAll(pending);
+    }
+
+    /**
+     * Decompresses frames in parallel.
+     *
+     * @param frames the frames
+     * @return the payloads, in the order of the frames
+     * @throws IOException if any frame is corrupt, or the wait is
+     * interrupted
+     */
+    public List<byte[]> decompressAll(List<byte[]> frames) throws IOException
+    {
+        ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>(frames.size());
+        for (byte[] frame : frames)
+        {
+            pending.add(decompress(frame));
+        }
+        return awaitAll(pending);
+    }
+
+    /**
+     * Waits for every task in order, cancelling the rest if one fails.
+     */
+    private static List<byte[]> awaitAll(ArrayDeque<Future<byte[]>> pending) throws IOException
+    {
+        List<byte[]> results = new ArrayList<>(pending.size());
+        try
+        {
+            while (!pending.isEmpty())
+            {
+                results.add(BlockEncoder.await(pending.poll()));
+            }
+        } finally
+        {
+            for (Future<byte[]> task : pending)
+            {
+                task.cancel(false);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Returns the codec shared by every task.
+     *
+     * @return the codec
+     */
+    public HuffmanCodec getCodec()
+    {
+        return codec;
+    }
+
+    /**
+     * Stops accepting payloads and waits for the ones already submitted. If
+     * the wait is interrupted the waiting payloads are abandoned.
+     */
+    @Override
+    public void close()
+    {
+        executor.shutdown();
+        try
+        {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES))
+            {
+                // Keep waiting: the tasks left are bounded by the queue
+            }
+        } catch (InterruptedException e)
+        {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package collinsworth_Project4_2015;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Order-1 context Huffman coding of whole files over the byte alphabet. Each
+ * byte is coded with a table chosen by the byte before it (the context), so
+ * in text the letter after a 'q' or after a space gets a code fitted to what
+ * actually follows those bytes instead of one code for the whole file.
+ * <p>
+ * A table costs header bits, so a context only gets its own table when that
+ * table saves more than it costs. Sparse contexts are merged and share one
+ * fallback table built from their combined counts; the choice is refined
+ * once after the fallback table has been rebuilt for just the merged
+ * contexts. Encoding uses flat arrays indexed by context and byte and
+ * decoding uses one {@link TableDecoder} per context, so neither allocates
+ * per byte.
+ * <p>
+ * File layout (big-endian): int magic "HUFC", byte version, long original
+ * length, long bit length, then that many bits: 1 bit set if there is a
+ * fallback table, the fallback table, 256 bits marking the contexts with
+ * their own table, those tables in context order ({@link CanonicalCode#write}),
+ * and then the codes, padded to a whole byte. The context of the first byte
+ * is 0.
+ *
+ * @author Tobyn Collinsworth
+ */
+public class ContextHuffman
+{
+
+    /**
+     * Identifies an order-1 context coded file, "HUFC"
+     */
+    public static final int MAGIC = 0x48554643;
+
+    /**
+     * Version of the file layout
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Longest code length used, keeping the decoder tables small
+     */
+    public static final int MAX_CODE_LENGTH = BlockCodec.MAX_CODE_LENGTH;
+
+    /**
+     * Number of contexts, one per value of the previous byte
+     */
+    private static final int CONTEXTS = FrequencyCounter.BYTE_SYMBOLS;
+
+    private ContextHuffman()
+    {
+    }
+
+    /**
+     * Compresses a file. The file is read twice, once to count the bytes in
+     * each context and once to encode them.
+     *
+     * @param inputName the file to compress
+     * @param outputName the file to create
+     * @throws IOException if a file cannot be read or written, or the input
+     * changes between the two passes
+     */
+    public static void encodeFile(String inputName, String outputName) throws IOException
+    {
+        // counts[context << 8 | byte]
+        long[] counts = new long[CONTEXTS * FrequencyCounter.BYTE_SYMBOLS];
+        long length = 0;
+        try (InputStream in = new FileInputStream(inputName))
+        {
+            byte[] buffer = new byte[FrequencyCounter.BUFFER_SIZE];
+            int context = 0;
+            int n;
+            while ((n = in.read(buffer)) != -1)
+            {
+                for (int i = 0; i < n; i++)
+                {
+                    int b = buffer[i] & 0xFF;
+                    counts[context << 8 | b]++;
+                    context = b;
+                }
+                length += n;
+            }
+        }
+
+        CanonicalCode[] own = new CanonicalCode[CONTEXTS];
+        CanonicalCode fallback = chooseTables(counts, own);
+
+        BitWriter tables = new BitWriter(1024);
+        writeTables(tables, fallback, own);
+
+        // Flat copies of every context's code for the encoding loop
+        long[] codeBits = new long[counts.length];
+        byte[] codeLengths = new byte[counts.length];
+        long bitLength = length == 0 ? 0 : tables.bitLength();
+        for (int context = 0; context < CONTEXTS; context++)
+        {
+            CanonicalCode code = own[context] != null ? own[context] : fallback;
+            for (int b = 0; code != null && b < FrequencyCounter.BYTE_SYMBOLS; b++)
+            {
+                int index = context << 8 | b;
+                if (counts[index] > 0)
+                {
+                    codeBits[index] = code.getCode(b);
+                    codeLengths[index] = (byte) code.getLength(b);
+                    bitLength += counts[index] * codeLengths[index];
+                }
+            }
+        }
+
+        try (InputStream in = new FileInputStream(inputName);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(outputName), FrequencyCounter.BUFFER_SIZE)))
+        {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(length);
+            out.writeLong(bitLength);
+            if (length == 0)
+            {
+                return;
+            }
+            StreamBitWriter bits = new StreamBitWriter(out);
+            writeTables(bits, fallback, own);
+            byte[] buffer = new byte[FrequencyCounter.BUFFER_SIZE];
+            int context = 0;
+            int n;
+            while ((n = in.read(buffer)) != -1)
+            {
+                for (int i = 0; i < n; i++)
+                {
+                    int b = buffer[i] & 0xFF;
+                    int index = context << 8 | b;
+                    if (codeLengths[index] == 0)
+                    {
+                        throw new IOException("Input changed while it was being encoded");
+                    }
+                    bits.writeBits(codeBits[index], codeLengths[index]);
+                    context = b;
+                }
+            }
+            if (bits.bitLength() != bitLength)
+            {
+                throw new IOException("Input changed while it was being encoded");
+            }
+            bits.finish();
+        }
+    }
+
+    /**
+     * Recreates a file written by {@link #encodeFile}.
+     *
+     * @param inputName the compressed file
+     * @param outputName the file to recreate
+     * @throws IOException if a file cannot be read or written, or the
+     * compressed file is corrupt
+     */
+    public static void decodeFile(String inputName, String outputName) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(inputName), FrequencyCounter.BUFFER_SIZE));
+                OutputStream out = new FileOutputStream(outputName))
+        {
+            if (in.readInt() != MAGIC)
+            {
+                throw new IOException("Not a context-coded Huffman file: " + inputName);
+            }
+            if (in.readByte() != VERSION)
+            {
+                throw new IOException("Unsupported context-coded Huffman file version: " + inputName);
+            }
+            long length = in.readLong();
+            long bitLength = in.readLong();
+            // Every code is at least one bit long
+            if (length < 0 || bitLength < length || (length == 0) != (bitLength == 0))
+            {
+                throw new IOException("Corrupt context-coded Huffman file: " + inputName);
+            }
+            if (length == 0)
+            {
+                return;
+            }
+
+            StreamBitReader bits = new StreamBitReader(in, bitLength);
+            TableDecoder fallback = null;
+            if (bits.readBits(1) == 1)
+            {
+                fallback = CanonicalCode.read(bits).createDecoder(TableDecoder.DEFAULT_LOOKUP_BITS);
+            }
+            boolean[] hasOwn = new boolean[CONTEXTS];
+            for (int context = 0; context < CONTEXTS; context++)
+            {
+                hasOwn[context] = bits.readBits(1) == 1;
+            }
+            TableDecoder[] decoders = new TableDecoder[CONTEXTS];
+            for (int context = 0; context < CONTEXTS; context++)
+            {
+                decoders[context] = hasOwn[context]
+                        ? CanonicalCode.read(bits).createDecoder(TableDecoder.DEFAULT_LOOKUP_BITS)
+                        : fallback;
+            }
+
+            byte[] buffer = new byte[FrequencyCounter.BUFFER_SIZE];
+            int context = 0;
+            for (long remaining = length; remaining > 0;)
+            {
+                int n = (int) Math.min(buffer.length, remaining);
+                for (int i = 0; i < n; i++)
+                {
+                    TableDecoder decoder = decoders[context];
+                    if (decoder == null)
+                    {
+                        throw new IOException("Corrupt context-coded Huffman file: context " + context + " has no table");
+                    }
+                    context = decoder.decodeSymbol(bits);
+                    buffer[i] = (byte) context;
+                }
+                out.write(buffer, 0, n);
+                remaining -= n;
+            }
+            if (bits.hasMoreBits())
+            {
+                throw new IOException("Corrupt context-coded Huffman file: extra bits after the last byte");
+            }
+        }
+    }
+
+    /**
+     * Decides which contexts get their own table and builds the tables.
+     *
+     * @param counts the byte counts of every context, indexed by
+     * {@code context << 8 | byte}
+     * @param own receives the table of each context that has its own
+     * @return the fallback table shared by the other contexts, or
+     * {@code null} if every context with data has its own
+     * @throws IOException if a table cannot be measured
+     */
+    private static CanonicalCode chooseTables(long[] counts, CanonicalCode[] own) throws IOException
+    {
+        long[][] contextCounts = new long[CONTEXTS][];
+        long[] ownBits = new long[CONTEXTS];
+        long[] all = new long[FrequencyCounter.BYTE_SYMBOLS];
+        for (int context = 0; context < CONTEXTS; context++)
+        {
+            contextCounts[context] = new long[FrequencyCounter.BYTE_SYMBOLS];
+            System.arraycopy(counts, context << 8, contextCounts[context], 0, FrequencyCounter.BYTE_SYMBOLS);
+            CanonicalCode code = CanonicalCode.fromFrequencies(contextCounts[context], MAX_CODE_LENGTH);
+            if (code != null)
+            {
+                own[context] = code;
+                ownBits[context] = tableBits(code) + codedBits(contextCounts[context], code);
+            }
+            for (int b = 0; b < all.length; b++)
+            {
+                all[b] += contextCounts[context][b];
+            }
+        }
+
+        // First guess: the fallback is the order-0 code of the whole file.
+        // Then rebuild it from only the contexts that chose it and decide once more.
+        CanonicalCode fallback = CanonicalCode.fromFrequencies(all, MAX_CODE_LENGTH);
+        boolean[] merged = new boolean[CONTEXTS];
+        for (int round = 0; round < 2 && fallback != null; round++)
+        {
+            long[] mergedCounts = new long[FrequencyCounter.BYTE_SYMBOLS];
+            boolean anyMerged = false;
+            for (int context = 0; context < CONTEXTS; context++)
+            {
+                if (own[context] == null && !merged[context])
+                {
+                    continue;
+                }
+                long sharedBits = codedBits(contextCounts[context], fallback);
+                merged[context] = sharedBits >= 0 && sharedBits < ownBits[context];
+                if (merged[context])
+                {
+                    anyMerged = true;
+                    for (int b = 0; b < mergedCounts.length; b++)
+                    {
+                        mergedCounts[b] += contextCounts[context][b];
+                    }
+                }
+            }
+            fallback = anyMerged ? CanonicalCode.fromFrequencies(mergedCounts, MAX_CODE_LENGTH) : null;
+        }
+        for (int context = 0; context < CONTEXTS; context++)
+        {
+            if (merged[context])
+            {
+                own[context] = null;
+            }
+        }
+        return fallback;
+    }
+
+    /**
+     * Writes the fallback table, the context flags and the context tables.
+     */
+    private static void writeTables(BitOutput out, CanonicalCode fallback, CanonicalCode[] own) throws IOException
+    {
+        out.writeBits(fallback != null ? 1 : 0, 1);
+        if (fallback != null)
+        {
+            fallback.write(out);
+        }
+        for (CanonicalCode code : own)
+        {
+            out.writeBits(code != null ? 1 : 0, 1);
+        }
+        for (CanonicalCode code : own)
+        {
+            if (code != null)
+            {
+                code.write(out);
+            }
+        }
+    }
+
+    /**
+     * Returns the bits needed to code a histogram, or -1 if a counted byte
+     * has no code.
+     */
+    private static long codedBits(long[] counts, CanonicalCode code)
+    {
+        long bits = 0;
+        for (int b = 0; b < counts.length; b++)
+        {
+            if (counts[b] > 0)
+            {
+                if (code.getLength(b) == 0)
+                {
+                    return -1;
+                }
+                bits += counts[b] * code.getLength(b);
+            }
+        }
+        return bits;
+    }
+
+    // Size of a table in the file
+    private static long tableBits(CanonicalCode code) throws IOException
+    {
+        BitWriter table = new BitWriter(64);
+        code.write(table);
+        return table.bitLength();
+    }
+}
@@ -0,0 +1,182 @@
+package collinsworth_Project4_2015;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A least-recently-used cache of built {@link HuffmanDictionary} tables,
+ * keyed by dictionary ID. Dictionaries missing from the cache are loaded
+ * through a {@link Loader}, so a hot dictionary is loaded and built once and
+ * then served from memory; when the cache is full the least recently used
+ * dictionary is dropped. All methods are safe to call from several threads:
+ * threads that miss the same ID at the same time wait for one load rather
+ * than each building a copy. A failed load is not cached, so the next
+ * request tries again.
+ *
+ * @author Tobyn Collinsworth
+ */
+public class DictionaryCache
+{
+
+    /**
+     * Supplies the dictionary for an ID that is not cached
+     */
+    public interface Loader
+    {
+
+        // Load and build the dictionary with the given ID
+        HuffmanDictionary load(int id) throws IOException;
+    }
+
+    private final Loader loader;
+    private final LinkedHashMap<Integer, CompletableFuture<HuffmanDictionary>> cache;
+
+    /**
+     * Creates a cache that loads dictionaries from files named by a pattern.
+     *
+     * @param fileNamePattern a {@link String#format} pattern turning an ID
+     * into a file name, such as {@code "dict-%d.hufd"}
+     * @param capacity the largest number of dictionaries kept
+     * @return the cache
+     */
+    public static DictionaryCache forFiles(String fileNamePattern, int capacity)
+    {
+        return new DictionaryCache(id ->
+        {
+            HuffmanDictionary dictionary = HuffmanDictionary.load(String.format(fileNamePattern, id));
+            if (dictionary.getId() != id)
+            {
+                throw new IOException("Dictionary file for " + id + " holds dictionary " + dictionary.getId());
+            }
+            return dictionary;
+        }, capacity);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param loader supplies dictionaries that are not cached
+     * @param capacity the largest number of dictionaries kept
+     */
+    public DictionaryCache(Loader loader, int capacity)
+    {
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.loader = loader;
+        cache = new LinkedHashMap<Integer, CompletableFuture<HuffmanDictionary>>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, CompletableFuture<HuffmanDictionary>> eldest)
+            {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the dictionary with an ID, loading it if it is not cached.
+     *
+     * @param id the dictionary ID
+     * @return the dictionary
+     * @throws IOException if the dictionary cannot be loaded
+     */
+    public HuffmanDictionary get(int id) throws IOException
+    {
+        CompletableFuture<HuffmanDictionary> dictionary;
+        boolean loading = false;
+        synchronized (cache)
+        {
+            dictionary = cache.get(id);
+            if (dictionary == null)
+            {
+                dictionary = new CompletableFuture<>();
+                cache.put(id, dictionary);
+                loading = true;
+            }
+        }
+        if (loading)
+        {
+            // Load outside the lock so a slow load does not hold up hits on other IDs
+            try
+            {
+                HuffmanDictionary loaded = loader.load(id);
+                dictionary.complete(loaded);
+                return loaded;
+            } catch (Throwable e)
+            {
+                synchronized (cache)
+                {
+                    cache.remove(id, dictionary);
+                }
+                dictionary.completeExceptionally(e);
+                throw e;
+            }
+        }
+        try
+        {
+            return dictionary.get();
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for dictionary " + id);
+        } catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException("Dictionary " + id + " could not be loaded", e.getCause());
+        }
+    }
+
+    /**
+     * Adds a dictionary that is already built, such as one just trained.
+     *
+     * @param dictionary the dictionary
+     */
+    public void put(HuffmanDictionary dictionary)
+    {
+        synchronized (cache)
+        {
+            cache.put(dictionary.getId(), CompletableFuture.completedFuture(dictionary));
+        }
+    }
+
+    /**
+     * Decompresses a frame with whichever dictionary it names.
+     *
+     * @param frame a frame written by {@link HuffmanDictionary#compress}
+     * @return the message
+     * @throws IOException if the frame is corrupt or its dictionary cannot be
+     * loaded
+     */
+    public byte[] decompress(byte[] frame) throws IOException
+    {
+        BitReader in = new BitReader(frame, 0, 8L * frame.length);
+        long id = HuffmanDictionary.readVarint(in);
+        if (id > Integer.MAX_VALUE)
+        {
+            throw new IOException("Corrupt frame: dictionary ID " + id);
+        }
+        return get((int) id).decodeMessage(in);
+    }
+
+    /**
+     * Returns the number of dictionaries currently cached.
+     *
+     * @return the number of cached dictionaries
+     */
+    public int size()
+    {
+        synchronized (cache)
+        {
+            return cache.size();
+        }
+    }
+}
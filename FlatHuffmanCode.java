@@ -0,0 +1,428 @@
+package collinsworth_Project4_2015;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A Huffman code held entirely in a few flat primitive arrays, with no
+ * object per symbol or per tree node. The code lengths are computed in
+ * place in one array of sorted weights (the algorithm of Moffat and
+ * Katajainen, "In-place calculation of minimum-redundancy codes", 1995):
+ * the first pass turns weights into parent pointers, the second into
+ * internal node depths and the third into leaf depths, so the tree is never
+ * built as nodes and nothing recurses. Codes are then assigned canonically
+ * by counting lengths, as Deflate does.
+ * <p>
+ * Decoding uses a root table for codes up to the lookup width and the
+ * canonical first code of each length for longer ones, so no secondary
+ * tables are needed. {@link #tableBytes} gives the exact number of bytes the
+ * arrays of a built code hold, to size caches of many codes.
+ *
+ * @author Tobyn Collinsworth
+ */
+public final class FlatHuffmanCode
+{
+
+    /**
+     * Longest code length supported, so codes fit in an int
+     */
+    public static final int MAX_CODE_LENGTH = 31;
+
+    /**
+     * Bits of a sort key that hold the symbol, below the weight
+     */
+    private static final int SYMBOL_BITS = 16;
+
+    /**
+     * Code length of each symbol, 0 for symbols without a code
+     */
+    private final byte[] lengths;
+
+    /**
+     * Code bits of each symbol, right-aligned
+     */
+    private final int[] codes;
+
+    /**
+     * Symbols in canonical order (by code length, then by value)
+     */
+    private final int[] symbols;
+
+    /**
+     * Root decoding table: {@code symbol << 8 | length} for codes no longer
+     * than {@code rootBits}, 0 where a longer code starts
+     */
+    private final int[] root;
+
+    /**
+     * Number of bits indexing the root table
+     */
+    private final int rootBits;
+
+    /**
+     * Longest code length
+     */
+    private final int maxLength;
+
+    /**
+     * Per code length: the first canonical code, the index in
+     * {@code symbols} of its symbol, and the number of codes
+     */
+    private final int[] firstCode;
+    private final int[] firstIndex;
+    private final int[] lengthCount;
+
+    private FlatHuffmanCode(byte[] lengths, int lookupBits)
+    {
+        this.lengths = lengths;
+        int longest = 0;
+        int symbolCount = 0;
+        for (byte length : lengths)
+        {
+            longest = Math.max(longest, length);
+            symbolCount += length > 0 ? 1 : 0;
+        }
+        maxLength = longest;
+
+        // Count the codes of each length; each length's codes follow the shorter ones
+        lengthCount = new int[maxLength + 1];
+        for (byte length : lengths)
+        {
+            lengthCount[length]++;
+        }
+        lengthCount[0] = 0;
+        firstCode = new int[maxLength + 1];
+        firstIndex = new int[maxLength + 1];
+        int code = 0;
+        for (int length = 1; length <= maxLength; length++)
+        {
+            code = (code + lengthCount[length - 1]) << 1;
+            firstCode[length] = code;
+            firstIndex[length] = firstIndex[length - 1] + lengthCount[length - 1];
+        }
+
+        // Hand out the codes of each length in symbol order
+        codes = new int[lengths.length];
+        symbols = new int[symbolCount];
+        int[] next = new int[maxLength + 1];
+        for (int symbol = 0; symbol < lengths.length; symbol++)
+        {
+            int length = lengths[symbol];
+            if (length > 0)
+            {
+                codes[symbol] = firstCode[length] + next[length];
+                symbols[firstIndex[length] + next[length]++] = symbol;
+            }
+        }
+
+        rootBits = Math.max(1, Math.min(lookupBits, maxLength));
+        root = new int[1 << rootBits];
+        for (int symbol = 0; symbol < lengths.length; symbol++)
+        {
+            int length = lengths[symbol];
+            if (length > 0 && length <= rootBits)
+            {
+                int first = codes[symbol] << (rootBits - length);
+                Arrays.fill(root, first, first + (1 << (rootBits - length)), symbol << 8 | length);
+            }
+        }
+    }
+
+    /**
+     * Builds the optimal code for a histogram, with no code longer than
+     * {@code maxLength} bits. Symbols with a zero count get no code.
+     *
+     * @param frequencies the count of each symbol, indexed by symbol, at
+     * most 2^16 symbols
+     * @param maxLength the longest code length allowed, at most
+     * {@link #MAX_CODE_LENGTH}
+     * @param lookupBits the number of bits resolved by the root table
+     * @return the code, or {@code null} if every count is zero
+     */
+    public static FlatHuffmanCode build(long[] frequencies, int maxLength, int lookupBits)
+    {
+        if (frequencies.length > 1 << SYMBOL_BITS || maxLength > MAX_CODE_LENGTH
+                || lookupBits < 1 || lookupBits > TableDecoder.MAX_LOOKUP_BITS)
+        {
+            throw new IllegalArgumentException("Flat codes take at most " + (1 << SYMBOL_BITS)
+                    + " symbols, codes of at most " + MAX_CODE_LENGTH
+                    + " bits and lookups of at most " + TableDecoder.MAX_LOOKUP_BITS + " bits");
+        }
+        int count = 0;
+        for (long frequency : frequencies)
+        {
+            count += frequency != 0 ? 1 : 0;
+        }
+        if (count == 0)
+        {
+            return null;
+        }
+        long[] weights = new long[count];
+        count = 0;
+        for (long frequency : frequencies)
+        {
+            if (frequency != 0)
+            {
+                weights[count++] = frequency;
+            }
+        }
+        int[] codeLengths = codeLengths(weights, maxLength);
+        byte[] lengths = new byte[frequencies.length];
+        count = 0;
+        for (int symbol = 0; symbol < frequencies.length; symbol++)
+        {
+            if (frequencies[symbol] != 0)
+            {
+                lengths[symbol] = (byte) codeLengths[count++];
+            }
+        }
+        return new FlatHuffmanCode(lengths, lookupBits);
+    }
+
+    /**
+     * Computes optimal code lengths for the given weights with no code
+     * longer than {@code maxLength}. The lengths are computed in place; only
+     * if the longest one is over the limit does
+     * {@link PackageMerge#limitCodeLengths} recompute them.
+     *
+     * @param weights the frequency of each symbol, all positive, at most
+     * 2^16 of them
+     * @param maxLength the longest code length allowed
+     * @return the code length of each symbol, parallel to {@code weights}
+     */
+    public static int[] codeLengths(long[] weights, int maxLength)
+    {
+        int n = weights.length;
+        if (n > 1 << SYMBOL_BITS || maxLength < 1 || maxLength > BitStream.MAX_BITS
+                || (maxLength < 31 && n > (1 << maxLength)))
+        {
+            throw new IllegalArgumentException("Cannot give " + n
+                    + " symbols codes of at most " + maxLength + " bits");
+        }
+        int[] lengths = new int[n];
+        if (n == 0)
+        {
+            return lengths;
+        }
+        if (n == 1)
+        {
+            lengths[0] = 1;
+            return lengths;
+        }
+
+        // Sort on a packed (weight, index) key so no index objects are needed
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++)
+        {
+            if (weights[i] <= 0 || weights[i] >= 1L << (63 - SYMBOL_BITS))
+            {
+                throw new IllegalArgumentException("Weight " + weights[i] + " out of range");
+            }
+            keys[i] = weights[i] << SYMBOL_BITS | i;
+        }
+        Arrays.sort(keys);
+        long[] a = new long[n];
+        for (int i = 0; i < n; i++)
+        {
+            a[i] = keys[i] >>> SYMBOL_BITS;
+        }
+        minimumRedundancy(a);
+
+        // The lightest symbol has the longest code
+        if (a[0] > maxLength)
+        {
+            return PackageMerge.limitCodeLengths(weights, maxLength);
+        }
+        for (int i = 0; i < n; i++)
+        {
+            lengths[(int) (keys[i] & ((1 << SYMBOL_BITS) - 1))] = (int) a[i];
+        }
+        return lengths;
+    }
+
+    /**
+     * Replaces ascending weights by their Huffman code lengths, in place.
+     *
+     * @param a at least two weights in ascending order; on return the code
+     * length of each
+     */
+    private static void minimumRedundancy(long[] a)
+    {
+        int n = a.length;
+
+        // Left to right: merge the two lightest items, leaving each merged
+        // item's weight at its slot and a parent pointer in the slots it used
+        a[0] += a[1];
+        int root = 0;
+        int leaf = 2;
+        for (int next = 1; next < n - 1; next++)
+        {
+            if (leaf >= n || a[root] < a[leaf])
+            {
+                a[next] = a[root];
+                a[root++] = next;
+            }
+            else
+            {
+                a[next] = a[leaf++];
+            }
+            if (leaf >= n || (root < next && a[root] < a[leaf]))
+            {
+                a[next] += a[root];
+                a[root++] = next;
+            }
+            else
+            {
+                a[next] += a[leaf++];
+            }
+        }
+
+        // Right to left: the depth of each internal node is one more than its parent's
+        a[n - 2] = 0;
+        for (int next = n - 3; next >= 0; next--)
+        {
+            a[next] = a[(int) a[next]] + 1;
+        }
+
+        // Right to left: the leaves take the free slots at each depth
+        int available = 1;
+        int used = 0;
+        int depth = 0;
+        root = n - 2;
+        int next = n - 1;
+        while (available > 0)
+        {
+            while (root >= 0 && a[root] == depth)
+            {
+                used++;
+                root--;
+            }
+            while (available > used)
+            {
+                a[next--] = depth;
+                available--;
+            }
+            available = 2 * used;
+            depth++;
+            used = 0;
+        }
+    }
+
+    /**
+     * Writes the code of a symbol to the bitstream.
+     *
+     * @param out the bitstream to write to
+     * @param symbol a symbol that has a code
+     * @throws IOException if the bits cannot be written or the symbol has no
+     * code
+     */
+    public void encodeSymbol(BitOutput out, int symbol) throws IOException
+    {
+        if (symbol < 0 || symbol >= lengths.length || lengths[symbol] == 0)
+        {
+            throw new IOException("Symbol " + symbol + " has no code");
+        }
+        out.writeBits(codes[symbol], lengths[symbol]);
+    }
+
+    /**
+     * Reads one code from the bitstream and returns its symbol.
+     *
+     * @param in the bitstream positioned at the start of a code
+     * @return the decoded symbol
+     * @throws IOException if the bits do not form a valid code or run out
+     */
+    public int decodeSymbol(BitInput in) throws IOException
+    {
+        int entry = root[(int) in.peekBits(rootBits)];
+        if (entry != 0)
+        {
+            in.skipBits(entry & 0x3F);
+            return entry >>> 8;
+        }
+        // Longer codes: find the length whose range of canonical codes holds the next bits
+        long window = in.peekBits(maxLength);
+        for (int length = rootBits + 1; length <= maxLength; length++)
+        {
+            int index = (int) (window >>> (maxLength - length)) - firstCode[length];
+            if (index >= 0 && index < lengthCount[length])
+            {
+                in.skipBits(length);
+                return symbols[firstIndex[length] + index];
+            }
+        }
+        throw new IOException("Invalid Huffman code in input");
+    }
+
+    /**
+     * Returns the code length of a symbol.
+     *
+     * @param symbol the symbol
+     * @return its code length, or 0 if the symbol has no code
+     */
+    public int getLength(int symbol)
+    {
+        return symbol >= 0 && symbol < lengths.length ? lengths[symbol] : 0;
+    }
+
+    /**
+     * Returns the code bits of a symbol, right-aligned.
+     *
+     * @param symbol a symbol that has a code
+     * @return its code bits
+     */
+    public int getCode(int symbol)
+    {
+        return codes[symbol];
+    }
+
+    /**
+     * Returns the longest code length.
+     *
+     * @return the longest code length in bits
+     */
+    public int maxLength()
+    {
+        return maxLength;
+    }
+
+    /**
+     * Returns the number of symbols that have a code.
+     *
+     * @return the number of symbols
+     */
+    public int symbolCount()
+    {
+        return symbols.length;
+    }
+
+    /**
+     * Returns the same code as a {@link CanonicalCode}, to write its table
+     * or use it with the other coders. Both assign codes the same way, so
+     * every symbol keeps its code bits.
+     *
+     * @return the canonical code
+     */
+    public CanonicalCode toCanonicalCode()
+    {
+        int[] symbolLengths = new int[symbols.length];
+        for (int i = 0; i < symbols.length; i++)
+        {
+            symbolLengths[i] = lengths[symbols[i]];
+        }
+        return new CanonicalCode(symbols, symbolLengths);
+    }
+
+    /**
+     * Returns the number of bytes held by the arrays of this code: the
+     * encoding arrays, the root table and the per-length decoding arrays.
+     * Array headers, which depend on the JVM, are not included.
+     *
+     * @return the size of the code's data in bytes
+     */
+    public long tableBytes()
+    {
+        return lengths.length + 4L * codes.length + 4L * symbols.length + 4L * root.length
+                + 4L * (firstCode.length + firstIndex.length + lengthCount.length);
+    }
+}
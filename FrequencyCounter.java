@@ -0,0 +1,195 @@
+package collinsworth_Project4_2015;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+
+/**
+ * Bulk symbol counting for building Huffman trees. Input is read in large
+ * blocks and counted into flat primitive arrays: bytes go into a
+ * {@code long[256]} histogram, and chars go into a direct array for the
+ * common single-byte range with a {@link CharFrequencyMap} for the rest.
+ *
+ * @author Tobyn Collinsworth
+ */
+public class FrequencyCounter
+{
+
+    /**
+     * Number of bytes (or chars) read from the input at a time
+     */
+    public static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Number of symbols in the byte alphabet
+     */
+    public static final int BYTE_SYMBOLS = 256;
+
+    private FrequencyCounter()
+    {
+    }
+
+    /**
+     * Adds the byte frequencies of part of an array to a histogram, one table
+     * increment per byte.
+     *
+     * @param data the bytes to count
+     * @param offset index of the first byte to count
+     * @param length number of bytes to count
+     * @param counts histogram of {@link #BYTE_SYMBOLS} entries to add to
+     */
+    public static void countBytes(byte[] data, int offset, int length, long[] counts)
+    {
+        for (int i = offset, end = offset + length; i < end; i++)
+        {
+            counts[data[i] & 0xFF]++;
+        }
+    }
+
+    /**
+     * Adds the byte frequencies of part of an array to a histogram using four
+     * interleaved tables. Consecutive bytes are counted in different tables,
+     * so runs of the same byte do not wait on the previous increment of the
+     * same counter to be stored before they can load it again.
+     *
+     * @param data the bytes to count
+     * @param offset index of the first byte to count
+     * @param length number of bytes to count
+     * @param counts histogram of {@link #BYTE_SYMBOLS} entries to add to
+     */
+    public static void countBytesInterleaved(byte[] data, int offset, int length, long[] counts)
+    {
+        int[] tables = new int[4 * BYTE_SYMBOLS];
+        int i = offset;
+        int end = offset + length;
+        for (int stop = end - 3; i < stop; i += 4)
+        {
+            tables[data[i] & 0xFF]++;
+            tables[BYTE_SYMBOLS + (data[i + 1] & 0xFF)]++;
+            tables[2 * BYTE_SYMBOLS + (data[i + 2] & 0xFF)]++;
+            tables[3 * BYTE_SYMBOLS + (data[i + 3] & 0xFF)]++;
+        }
+        for (; i < end; i++)
+        {
+            tables[data[i] & 0xFF]++;
+        }
+        for (int b = 0; b < BYTE_SYMBOLS; b++)
+        {
+            counts[b] += (long) tables[b] + tables[BYTE_SYMBOLS + b]
+                    + tables[2 * BYTE_SYMBOLS + b] + tables[3 * BYTE_SYMBOLS + b];
+        }
+    }
+
+    /**
+     * Adds the byte frequencies of part of a buffer to a histogram using four
+     * interleaved tables, reading the buffer with absolute gets so a mapped
+     * file can be counted in place without copying it to the heap.
+     *
+     * @param data the buffer holding the bytes; its position is not changed
+     * @param offset index of the first byte to count
+     * @param length number of bytes to count
+     * @param counts histogram of {@link #BYTE_SYMBOLS} entries to add to
+     */
+    public static void countBytesInterleaved(ByteBuffer data, int offset, int length, long[] counts)
+    {
+        int[] tables = new int[4 * BYTE_SYMBOLS];
+        int i = offset;
+        int end = offset + length;
+        for (int stop = end - 3; i < stop; i += 4)
+        {
+            tables[data.get(i) & 0xFF]++;
+            tables[BYTE_SYMBOLS + (data.get(i + 1) & 0xFF)]++;
+            tables[2 * BYTE_SYMBOLS + (data.get(i + 2) & 0xFF)]++;
+            tables[3 * BYTE_SYMBOLS + (data.get(i + 3) & 0xFF)]++;
+        }
+        for (; i < end; i++)
+        {
+            tables[data.get(i) & 0xFF]++;
+        }
+        for (int b = 0; b < BYTE_SYMBOLS; b++)
+        {
+            counts[b] += (long) tables[b] + tables[BYTE_SYMBOLS + b]
+                    + tables[2 * BYTE_SYMBOLS + b] + tables[3 * BYTE_SYMBOLS + b];
+        }
+    }
+
+    /**
+     * Counts every byte of a stream.
+     *
+     * @param in the stream to read until its end; it is not closed
+     * @return histogram of {@link #BYTE_SYMBOLS} byte frequencies
+     * @throws IOException if the stream cannot be read
+     */
+    public static long[] countBytes(InputStream in) throws IOException
+    {
+        long[] counts = new long[BYTE_SYMBOLS];
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int n;
+        while ((n = in.read(buffer, 0, buffer.length)) != -1)
+        {
+            countBytesInterleaved(buffer, 0, n, counts);
+        }
+        return counts;
+    }
+
+    /**
+     * Smooths a byte histogram for a code trained on samples: a byte value
+     * the samples never hold gets a count of one, so it still gets a (long)
+     * code, and every other count is kept. Every trained code uses this one
+     * rule, so the same samples give the same table through every API.
+     *
+     * @param counts a byte histogram, possibly shorter than
+     * {@link #BYTE_SYMBOLS} entries
+     * @return a new histogram of {@link #BYTE_SYMBOLS} entries, none of them
+     * zero
+     */
+    public static long[] smoothByteCounts(long[] counts)
+    {
+        long[] smoothed = new long[BYTE_SYMBOLS];
+        for (int b = 0; b < smoothed.length; b++)
+        {
+            smoothed[b] = Math.max(1, b < counts.length ? counts[b] : 0);
+        }
+        return smoothed;
+    }
+
+    /**
+     * Counts every char of a reader.
+     *
+     * @param in the reader to read until its end; it is not closed
+     * @return the frequency of each distinct char
+     * @throws IOException if the reader cannot be read
+     */
+    public static CharFrequencyMap countChars(Reader in) throws IOException
+    {
+        // Chars below 256 are counted directly and merged into the map at the end
+        long[] direct = new long[BYTE_SYMBOLS];
+        CharFrequencyMap frequencies = new CharFrequencyMap();
+        char[] buffer = new char[BUFFER_SIZE];
+        int n;
+        while ((n = in.read(buffer, 0, buffer.length)) != -1)
+        {
+            for (int i = 0; i < n; i++)
+            {
+                char ch = buffer[i];
+                if (ch < BYTE_SYMBOLS)
+                {
+                    direct[ch]++;
+                }
+                else
+                {
+                    frequencies.increment(ch);
+                }
+            }
+        }
+        for (int ch = 0; ch < BYTE_SYMBOLS; ch++)
+        {
+            if (direct[ch] != 0)
+            {
+                frequencies.add(ch, direct[ch]);
+            }
+        }
+        return frequencies;
+    }
+}
@@ -0,0 +1,190 @@
+package collinsworth_Project4_2015;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Byte frequencies estimated from part of a file instead of all of it, so a
+ * code table can be built, and encoding started, after reading only a
+ * fraction of the input. The sample is a set of equally spaced chunks
+ * spread over the whole file, read with positional reads.
+ * <p>
+ * Bytes that do not occur in the sample are not lost: every byte value is
+ * given a count of at least one before the code is built, so it still gets a
+ * (long) code in case it turns up in the unsampled part of the file.
+ * <p>
+ * The cost of using the sample instead of an exact count is estimated by
+ * cross-validation. Each chunk is counted as two halves; a code built from
+ * the first halves is measured on the second halves against the best code
+ * for the second halves, and the other way round. Because each of those
+ * codes sees only half the sample, the estimate errs on the high side.
+ *
+ * @author Tobyn Collinsworth
+ */
+public class FrequencySample
+{
+
+    /**
+     * Chunk size used when none is given
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+
+    /**
+     * Sampled counts, every byte value at least one
+     */
+    private final long[] counts;
+
+    /**
+     * Number of bytes read for the sample
+     */
+    private final long sampledBytes;
+
+    /**
+     * Length of the whole input
+     */
+    private final long totalBytes;
+
+    /**
+     * Estimated fractional growth of the output over an exact table
+     */
+    private final double estimatedLoss;
+
+    private FrequencySample(long[] firstHalves, long[] secondHalves, long sampledBytes, long totalBytes)
+    {
+        long[] sampled = new long[FrequencyCounter.BYTE_SYMBOLS];
+        for (int b = 0; b < sampled.length; b++)
+        {
+            sampled[b] = firstHalves[b] + secondHalves[b];
+        }
+        counts = FrequencyCounter.smoothByteCounts(sampled);
+        this.sampledBytes = sampledBytes;
+        this.totalBytes = totalBytes;
+        estimatedLoss = (crossLoss(firstHalves, secondHalves) + crossLoss(secondHalves, firstHalves)) / 2;
+    }
+
+    /**
+     * Samples a file.
+     *
+     * @param fileName the file to sample
+     * @param fraction the part of the file to read, greater than 0 and at
+     * most 1
+     * @param chunkSize the number of bytes per chunk
+     * @return the sample
+     * @throws IOException if the file cannot be read
+     */
+    public static FrequencySample ofFile(String fileName, double fraction, int chunkSize) throws IOException
+    {
+        if (!(fraction > 0 && fraction <= 1) || chunkSize < 2)
+        {
+            throw new IllegalArgumentException("Fraction must be in (0, 1] and chunks at least 2 bytes");
+        }
+        try (FileChannel in = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ))
+        {
+            long total = in.size();
+            long chunks = Math.max(1, (long) Math.ceil(total * fraction / chunkSize));
+            long stride = Math.max(chunkSize, total / chunks);
+            long[] firstHalves = new long[FrequencyCounter.BYTE_SYMBOLS];
+            long[] secondHalves = new long[FrequencyCounter.BYTE_SYMBOLS];
+            ByteBuffer buffer = ByteBuffer.allocate(chunkSize);
+            long sampled = 0;
+            for (long start = 0; start < total; start += stride)
+            {
+                buffer.clear();
+                while (buffer.hasRemaining())
+                {
+                    if (in.read(buffer, start + buffer.position()) <= 0)
+                    {
+                        break;
+                    }
+                }
+                int length = buffer.position();
+                int half = length / 2;
+                FrequencyCounter.countBytesInterleaved(buffer.array(), 0, half, firstHalves);
+                FrequencyCounter.countBytesInterleaved(buffer.array(), half, length - half, secondHalves);
+                sampled += length;
+            }
+            return new FrequencySample(firstHalves, secondHalves, sampled, total);
+        }
+    }
+
+    /**
+     * Measures how much longer {@code test} encodes with a code built from
+     * {@code train} than with the best code for {@code test} itself.
+     *
+     * @return the fractional increase in encoded bits
+     */
+    private static double crossLoss(long[] train, long[] test)
+    {
+        CanonicalCode trained = CanonicalCode.fromFrequencies(FrequencyCounter.smoothByteCounts(train),
+                BlockEncoder.MAX_CODE_LENGTH);
+        CanonicalCode best = CanonicalCode.fromFrequencies(test, BlockEncoder.MAX_CODE_LENGTH);
+        if (best == null)
+        {
+            return 0;
+        }
+        long trainedBits = 0;
+        long bestBits = 0;
+        for (int b = 0; b < test.length; b++)
+        {
+            trainedBits += test[b] * trained.getLength(b);
+            bestBits += test[b] * best.getLength(b);
+        }
+        return (double) trainedBits / bestBits - 1;
+    }
+
+    /**
+     * Builds the code for the sampled counts. Every byte value has a code.
+     *
+     * @return the code, with no code longer than
+     * {@link BlockEncoder#MAX_CODE_LENGTH}
+     */
+    public CanonicalCode code()
+    {
+        return CanonicalCode.fromFrequencies(counts, BlockEncoder.MAX_CODE_LENGTH);
+    }
+
+    /**
+     * Returns the sampled byte counts, each at least one.
+     *
+     * @return a copy of the counts, indexed by byte value
+     */
+    public long[] counts()
+    {
+        return counts.clone();
+    }
+
+    /**
+     * Returns the number of bytes read for the sample.
+     *
+     * @return the sampled byte count
+     */
+    public long sampledBytes()
+    {
+        return sampledBytes;
+    }
+
+    /**
+     * Returns the length of the sampled file.
+     *
+     * @return the total byte count
+     */
+    public long totalBytes()
+    {
+        return totalBytes;
+    }
+
+    /**
+     * Returns the estimated cost of using the sampled code instead of one
+     * built from an exact count, as a fraction of the exact output size
+     * (0.01 means about 1% larger output).
+     *
+     * @return the estimated fractional loss
+     */
+    public double estimatedLoss()
+    {
+        return estimatedLoss;
+    }
+}
@@ -0,0 +1,433 @@
+package collinsworth_Project4_2015;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compresses a batch of short records into one contiguous buffer. Building
+ * a code for every record of a few hundred bytes costs more than coding
+ * the record, and its table can be as large as the codes, so the batch is
+ * counted once and one code, stored once at the start of the buffer, codes
+ * every record. A record large enough to pay for a table of its own gets
+ * one when that is smaller than coding it with the shared code.
+ * <p>
+ * Buffer layout: the shared code table ({@link CanonicalCode#write}),
+ * padded to a whole byte, then the records, each starting on a byte at the
+ * offset given by {@link #offsets}. A record holds its length as an
+ * unsigned LEB128 varint; then, if it is not empty, one bit that is set if
+ * the record has its own table, that table if so, and the codes, padded to
+ * a whole byte.
+ * <p>
+ * Compressing allocates nothing per record on the shared-code path: the
+ * codes of all records go into one bit buffer, counting reuses one
+ * histogram and records in direct buffers are copied through one scratch
+ * array.
+ *
+ * @author Tobyn Collinsworth
+ */
+public final class HuffmanBatch
+{
+
+    /**
+     * Shortest record that is considered for a table of its own; a table
+     * costs tens of bytes, more than shorter records could save
+     */
+    public static final int OWN_TABLE_MIN_LENGTH = 1024;
+
+    /**
+     * Longest code length used, keeping the decoder tables small
+     */
+    public static final int MAX_CODE_LENGTH = BlockCodec.MAX_CODE_LENGTH;
+
+    /**
+     * The compressed batch
+     */
+    private final byte[] buffer;
+
+    /**
+     * Start of each record in {@code buffer}, and the end of the last
+     */
+    private final int[] offsets;
+
+    /**
+     * The decoder for the shared code, or {@code null} if no record uses it
+     */
+    private final TableDecoder sharedDecoder;
+
+    private HuffmanBatch(byte[] buffer, int[] offsets, TableDecoder sharedDecoder)
+    {
+        this.buffer = buffer;
+        this.offsets = offsets;
+        this.sharedDecoder = sharedDecoder;
+    }
+
+    /**
+     * The records of a batch, loaded one at a time into an array range
+     */
+    private abstract static class Records
+    {
+        byte[] array;
+        int offset;
+
+        abstract int size();
+
+        /**
+         * Points {@code array} and {@code offset} at a record.
+         *
+         * @return the length of the record
+         */
+        abstract int load(int record);
+    }
+
+    /**
+     * Compresses a batch of records.
+     *
+     * @param records the records
+     * @return the compressed batch
+     * @throws IOException if the batch is too large for one buffer
+     */
+    public static HuffmanBatch compress(List<byte[]> records) throws IOException
+    {
+        return compress(new Records()
+        {
+            @Override
+            int size()
+            {
+                return records.size();
+            }
+
+            @Override
+            int load(int record)
+            {
+                array = records.get(record);
+                offset = 0;
+                return array.length;
+            }
+        });
+    }
+
+    /**
+     * Compresses a batch of records held in buffers, each from its position
+     * to its limit. The positions of the buffers are not changed.
+     *
+     * @param records the records
+     * @return the compressed batch
+     * @throws IOException if the batch is too large for one buffer
+     */
+    public static HuffmanBatch compressBuffers(List<ByteBuffer> records) throws IOException
+    {
+        return compress(new Records()
+        {
+            private byte[] scratch = new byte[0];
+
+            @Override
+            int size()
+            {
+                return records.size();
+            }
+
+            @Override
+            int load(int record)
+            {
+                ByteBuffer data = records.get(record);
+                int length = data.remaining();
+                if (data.hasArray())
+                {
+                    array = data.array();
+                    offset = data.arrayOffset() + data.position();
+                    return length;
+                }
+                if (scratch.length < length)
+                {
+                    scratch = new byte[Math.max(length, 2 * scratch.length)];
+                }
+                data.get(data.position(), scratch, 0, length);
+                array = scratch;
+                offset = 0;
+                return length;
+            }
+        });
+    }
+
+    private static HuffmanBatch compress(Records records) throws IOException
+    {
+        // One histogram of the whole batch gives the shared code
+        int size = records.size();
+        long[] counts = new long[FrequencyCounter.BYTE_SYMBOLS];
+        long total = 0;
+        for (int r = 0; r < size; r++)
+        {
+            int length = records.load(r);
+            FrequencyCounter.countBytesInterleaved(records.array, records.offset, length, counts);
+            total += length;
+        }
+        CanonicalCode shared = CanonicalCode.fromFrequencies(counts, MAX_CODE_LENGTH);
+        BitWriter bits = new BitWriter((int) Math.min(Integer.MAX_VALUE - 8, 16 + total / 2));
+        long[] codeBits = new long[FrequencyCounter.BYTE_SYMBOLS];
+        int[] codeLengths = new int[FrequencyCounter.BYTE_SYMBOLS];
+        TableDecoder sharedDecoder = null;
+        if (shared != null)
+        {
+            shared.write(bits);
+            alignToByte(bits);
+            copyCode(shared, codeBits, codeLengths);
+            sharedDecoder = shared.createDecoder(TableDecoder.DEFAULT_LOOKUP_BITS);
+        }
+
+        int[] offsets = new int[size + 1];
+        offsets[0] = byteOffset(bits);
+        long[] ownBits = null;
+        int[] ownLengths = null;
+        for (int r = 0; r < size; r++)
+        {
+            int length = records.load(r);
+            byte[] array = records.array;
+            int start = records.offset;
+            HuffmanDictionary.writeVarint(bits, length);
+            if (length > 0)
+            {
+                CanonicalCode own = length >= OWN_TABLE_MIN_LENGTH
+                        ? ownCode(array, start, length, counts, codeLengths) : null;
+                bits.writeBits(own == null ? 0 : 1, 1);
+                long[] recordBits = codeBits;
+                int[] recordLengths = codeLengths;
+                if (own != null)
+                {
+                    if (ownBits == null)
+                    {
+                        ownBits = new long[FrequencyCounter.BYTE_SYMBOLS];
+                        ownLengths = new int[FrequencyCounter.BYTE_SYMBOLS];
+                    }
+                    own.write(bits);
+                    copyCode(own, ownBits, ownLengths);
+                    recordBits = ownBits;
+                    recordLengths = ownLengths;
+                }
+                for (int i = start, end = start + length; i < end; i++)
+                {
+                    int b = array[i] & 0xFF;
+                    bits.writeBits(recordBits[b], recordLengths[b]);
+                }
+                alignToByte(bits);
+            }
+            offsets[r + 1] = byteOffset(bits);
+        }
+        return new HuffmanBatch(bits.toByteArray(), offsets, sharedDecoder);
+    }
+
+    /**
+     * Builds a code for one record if it would code the record, table
+     * included, in fewer bits than the shared code.
+     *
+     * @param counts a histogram to reuse
+     * @param sharedLengths the shared code length of each byte
+     * @return the record's own code, or {@code null} to use the shared one
+     */
+    private static CanonicalCode ownCode(byte[] data, int offset, int length,
+            long[] counts, int[] sharedLengths) throws IOException
+    {
+        Arrays.fill(counts, 0);
+        FrequencyCounter.countBytesInterleaved(data, offset, length, counts);
+        long sharedCost = 0;
+        double entropy = 0;
+        int distinct = 0;
+        for (int b = 0; b < counts.length; b++)
+        {
+            if (counts[b] != 0)
+            {
+                sharedCost += counts[b] * sharedLengths[b];
+                entropy += counts[b] * (Math.log((double) length / counts[b]) / Math.log(2));
+                distinct++;
+            }
+        }
+        // No code beats the entropy, and a table costs at least a few bits per symbol
+        if (sharedCost - entropy <= 22 + 5 * distinct)
+        {
+            return null;
+        }
+        CanonicalCode own = CanonicalCode.fromFrequencies(counts, MAX_CODE_LENGTH);
+        long ownCost = 0;
+        for (int b = 0; b < counts.length; b++)
+        {
+            ownCost += counts[b] * own.getLength(b);
+        }
+        BitWriter table = new BitWriter(64);
+        own.write(table);
+        return ownCost + table.bitLength() < sharedCost ? own : null;
+    }
+
+    /**
+     * Copies the code of every byte into flat arrays for the encoding loop.
+     */
+    private static void copyCode(CanonicalCode code, long[] codeBits, int[] codeLengths)
+    {
+        for (int b = 0; b < codeBits.length; b++)
+        {
+            codeLengths[b] = code.getLength(b);
+            codeBits[b] = codeLengths[b] > 0 ? code.getCode(b) : 0;
+        }
+    }
+
+    private static void alignToByte(BitWriter bits)
+    {
+        bits.writeBits(0, (int) (-bits.bitLength() & 7));
+    }
+
+    private static int byteOffset(BitWriter bits) throws IOException
+    {
+        long offset = bits.bitLength() / 8;
+        if (offset > Integer.MAX_VALUE - 8)
+        {
+            throw new IOException("Batch too large for one buffer");
+        }
+        return (int) offset;
+    }
+
+    /**
+     * Reopens a batch from its buffer and offsets, such as ones that were
+     * stored or sent elsewhere.
+     *
+     * @param buffer the compressed batch
+     * @param offsets the start of each record and the end of the last
+     * @return the batch
+     * @throws IOException if the buffer or the offsets are corrupt
+     */
+    public static HuffmanBatch wrap(byte[] buffer, int[] offsets) throws IOException
+    {
+        if (offsets.length == 0 || offsets[0] < 0 || offsets[offsets.length - 1] > buffer.length)
+        {
+            throw new IOException("Corrupt batch: offsets outside the buffer");
+        }
+        for (int r = 1; r < offsets.length; r++)
+        {
+            if (offsets[r] <= offsets[r - 1])
+            {
+                throw new IOException("Corrupt batch: offset of record " + (r - 1));
+            }
+        }
+        TableDecoder sharedDecoder = null;
+        if (offsets[0] > 0)
+        {
+            sharedDecoder = CanonicalCode.read(new BitReader(buffer, 0, 8L * offsets[0]))
+                    .createDecoder(TableDecoder.DEFAULT_LOOKUP_BITS);
+        }
+        return new HuffmanBatch(buffer, offsets, sharedDecoder);
+    }
+
+    /**
+     * Returns the compressed batch. The array is not copied.
+     *
+     * @return the buffer holding every record
+     */
+    public byte[] buffer()
+    {
+        return buffer;
+    }
+
+    /**
+     * Returns the start of each record in the buffer, followed by the end of
+     * the last record. The array is not copied.
+     *
+     * @return the record offsets, one more than the number of records
+     */
+    public int[] offsets()
+    {
+        return offsets;
+    }
+
+    /**
+     * Returns the number of records.
+     *
+     * @return the number of records
+     */
+    public int size()
+    {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Returns the decompressed length of a record.
+     *
+     * @param record the index of the record
+     * @return the number of bytes the record decodes to
+     * @throws IOException if the record is corrupt
+     */
+    public int recordLength(int record) throws IOException
+    {
+        return readLength(recordBits(record));
+    }
+
+    /**
+     * Decompresses one record.
+     *
+     * @param record the index of the record
+     * @return the record
+     * @throws IOException if the record is corrupt
+     */
+    public byte[] decompress(int record) throws IOException
+    {
+        byte[] out = new byte[recordLength(record)];
+        decompress(record, out, 0);
+        return out;
+    }
+
+    /**
+     * Decompresses one record into an array, such as one buffer reused for
+     * every record.
+     *
+     * @param record the index of the record
+     * @param out the array to decode into
+     * @param offset index in {@code out} of the first decoded byte
+     * @return the length of the record
+     * @throws IOException if the record is corrupt
+     */
+    public int decompress(int record, byte[] out, int offset) throws IOException
+    {
+        BitReader in = recordBits(record);
+        int length = readLength(in);
+        if (length == 0)
+        {
+            return 0;
+        }
+        if (length > out.length - offset)
+        {
+            throw new IndexOutOfBoundsException("Record of " + length + " bytes does not fit");
+        }
+        TableDecoder decoder = sharedDecoder;
+        if (in.readBits(1) == 1)
+        {
+            decoder = CanonicalCode.read(in).createDecoder(TableDecoder.DEFAULT_LOOKUP_BITS);
+        }
+        else if (decoder == null)
+        {
+            throw new IOException("Corrupt batch: record " + record + " has no code table");
+        }
+        for (int i = offset, end = offset + length; i < end; i++)
+        {
+            out[i] = (byte) decoder.decodeSymbol(in);
+        }
+        if (in.bitsRemaining() >= 8)
+        {
+            throw new IOException("Corrupt batch: extra bytes after record " + record);
+        }
+        return length;
+    }
+
+    private BitReader recordBits(int record)
+    {
+        return new BitReader(buffer, offsets[record], 8L * (offsets[record + 1] - offsets[record]));
+    }
+
+    private static int readLength(BitReader in) throws IOException
+    {
+        long length = HuffmanDictionary.readVarint(in);
+        // Every code is at least one bit long, so the record bounds its length
+        if (length > in.bitsRemaining())
+        {
+            throw new IOException("Corrupt batch: record length " + length);
+        }
+        return (int) length;
+    }
+}
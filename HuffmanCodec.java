@@ -0,0 +1,285 @@
+package collinsworth_Project4_2015;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable Huffman coder for independent in-memory payloads. All state
+ * is fixed when the codec is built, so one instance can be shared by any
+ * number of threads, and every failure is reported by an exception instead
+ * of ending the process the way {@link HuffmanTree} once did.
+ * <p>
+ * A codec either codes every payload with one code given to its builder,
+ * or, without one, builds a code per payload and stores its table at the
+ * start of the frame. Both sides must use a codec built the same way.
+ * <p>
+ * Frame layout: the payload length as an unsigned LEB128 varint, the code
+ * table ({@link CanonicalCode#write}) if the codec has no shared code, then
+ * the codes, padded to a whole byte.
+ * <p>
+ * Encoding reuses one bit buffer and histogram per thread, so compressing
+ * allocates little beyond the frame itself.
+ *
+ * @author Tobyn Collinsworth
+ */
+public final class HuffmanCodec
+{
+
+    /**
+     * Longest code length used when none is given
+     */
+    public static final int DEFAULT_MAX_CODE_LENGTH = BlockCodec.MAX_CODE_LENGTH;
+
+    /**
+     * Buffers reused by the encoding calls of one thread
+     */
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * Longest code length of per-payload codes
+     */
+    private final int maxCodeLength;
+
+    /**
+     * Lookup width of the decoders
+     */
+    private final int lookupBits;
+
+    /**
+     * The code for every payload, or {@code null} for a code per payload
+     */
+    private final CanonicalCode code;
+
+    /**
+     * The decoder for {@code code}, or {@code null} for a code per payload
+     */
+    private final TableDecoder decoder;
+
+    private HuffmanCodec(Builder builder)
+    {
+        maxCodeLength = builder.maxCodeLength;
+        lookupBits = builder.lookupBits;
+        code = builder.code;
+        decoder = code == null ? null : code.createDecoder(lookupBits);
+    }
+
+    /**
+     * Returns a builder for a codec with a code per payload and the default
+     * limits.
+     *
+     * @return a new builder
+     */
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Builds a {@link HuffmanCodec}. A builder is not thread-safe, but the
+     * codecs it builds are.
+     */
+    public static final class Builder
+    {
+        private int maxCodeLength = DEFAULT_MAX_CODE_LENGTH;
+        private int lookupBits = TableDecoder.DEFAULT_LOOKUP_BITS;
+        private CanonicalCode code;
+
+        private Builder()
+        {
+        }
+
+        /**
+         * Sets the longest code length of the codes built for each payload.
+         *
+         * @param maxCodeLength the longest code length, 8 to
+         * {@link BitStream#MAX_BITS}
+         * @return this builder
+         */
+        public Builder maxCodeLength(int maxCodeLength)
+        {
+            if (maxCodeLength < 8 || maxCodeLength > BitStream.MAX_BITS)
+            {
+                throw new IllegalArgumentException("Longest code length must be between 8 and "
+                        + BitStream.MAX_BITS + " bits");
+            }
+            this.maxCodeLength = maxCodeLength;
+            return this;
+        }
+
+        /**
+         * Sets the number of bits the decoders resolve per table lookup.
+         *
+         * @param lookupBits the lookup width, 1 to
+         * {@link TableDecoder#MAX_LOOKUP_BITS}
+         * @return this builder
+         */
+        public Builder lookupBits(int lookupBits)
+        {
+            if (lookupBits < 1 || lookupBits > TableDecoder.MAX_LOOKUP_BITS)
+            {
+                throw new IllegalArgumentException("Lookup width must be between 1 and "
+                        + TableDecoder.MAX_LOOKUP_BITS + " bits");
+            }
+            this.lookupBits = lookupBits;
+            return this;
+        }
+
+        /**
+         * Codes every payload with one code, so frames carry no table.
+         * Payloads may only hold bytes that have a code.
+         *
+         * @param code the shared code, or {@code null} for a code per
+         * payload
+         * @return this builder
+         */
+        public Builder code(CanonicalCode code)
+        {
+            this.code = code;
+            return this;
+        }
+
+        /**
+         * Codes every payload with a code trained on sample payloads. Every
+         * byte value gets a code, so payloads unlike the samples still
+         * compress, only less well.
+         *
+         * @param samples payloads typical of the ones to be compressed
+         * @return this builder
+         */
+        public Builder train(List<byte[]> samples)
+        {
+            long[] counts = new long[FrequencyCounter.BYTE_SYMBOLS];
+            for (byte[] sample : samples)
+            {
+                FrequencyCounter.countBytesInterleaved(sample, 0, sample.length, counts);
+            }
+            code = CanonicalCode.fromFrequencies(FrequencyCounter.smoothByteCounts(counts), maxCodeLength);
+            return this;
+        }
+
+        /**
+         * Builds the codec.
+         *
+         * @return the codec
+         */
+        public HuffmanCodec build()
+        {
+            return new HuffmanCodec(this);
+        }
+    }
+
+    /**
+     * Compresses one payload into a frame.
+     *
+     * @param data the payload
+     * @return the frame
+     * @throws IOException if the codec has a shared code and the payload
+     * holds a byte without a code
+     */
+    public byte[] compress(byte[] data) throws IOException
+    {
+        return compress(data, 0, data.length);
+    }
+
+    /**
+     * Compresses part of an array into a frame.
+     *
+     * @param data the array holding the payload
+     * @param offset index of the first byte of the payload
+     * @param length number of bytes in the payload
+     * @return the frame
+     * @throws IOException if the codec has a shared code and the payload
+     * holds a byte without a code
+     */
+    public byte[] compress(byte[] data, int offset, int length) throws IOException
+    {
+        BitWriter bits = encode(data, offset, length, SCRATCH.get());
+        byte[] frame = new byte[(int) ((bits.bitLength() + 7) / 8)];
+        bits.copyTo(frame, 0);
+        return frame;
+    }
+
+    /**
+     * Encodes a payload into the bit buffer of a scratch area.
+     *
+     * @return the bit buffer holding the frame
+     */
+    private BitWriter encode(byte[] data, int offset, int length, Scratch scratch) throws IOException
+    {
+        BitWriter bits = scratch.bits;
+        bits.reset();
+        HuffmanDictionary.writeVarint(bits, length);
+        CanonicalCode frameCode = code;
+        if (frameCode == null && length > 0)
+        {
+            long[] counts = scratch.counts;
+            Arrays.fill(counts, 0);
+            FrequencyCounter.countBytesInterleaved(data, offset, length, counts);
+            frameCode = CanonicalCode.fromFrequencies(counts, maxCodeLength);
+            frameCode.write(bits);
+        }
+        for (int i = offset, end = offset + length; i < end; i++)
+        {
+            frameCode.encodeSymbol(bits, data[i] & 0xFF);
+        }
+        return bits;
+    }
+
+    /**
+     * Decompresses a frame written by {@link #compress} with a codec built
+     * the same way.
+     *
+     * @param frame the frame
+     * @return the payload
+     * @throws IOException if the frame is corrupt
+     */
+    public byte[] decompress(byte[] frame) throws IOException
+    {
+        BitReader in = new BitReader(frame, 0, 8L * frame.length);
+        long length = HuffmanDictionary.readVarint(in);
+        // Every code is at least one bit long, so the frame bounds the payload length
+        if (length > in.bitsRemaining())
+        {
+            throw new IOException("Corrupt frame: payload length " + length);
+        }
+        byte[] payload = new byte[(int) length];
+        if (length == 0)
+        {
+            return payload;
+        }
+        TableDecoder frameDecoder = decoder;
+        if (frameDecoder == null)
+        {
+            frameDecoder = CanonicalCode.read(in).createDecoder(lookupBits);
+        }
+        for (int i = 0; i < payload.length; i++)
+        {
+            payload[i] = (byte) frameDecoder.decodeSymbol(in);
+        }
+        if (in.bitsRemaining() >= 8)
+        {
+            throw new IOException("Corrupt frame: extra bytes after the payload");
+        }
+        return payload;
+    }
+
+    /**
+     * Returns the code used for every payload.
+     *
+     * @return the shared code, or {@code null} if each payload has its own
+     */
+    public CanonicalCode getCode()
+    {
+        return code;
+    }
+
+    /**
+     * The buffers one thread reuses from one payload to the next
+     */
+    private static class Scratch
+    {
+        final BitWriter bits = new BitWriter(FrequencyCounter.BUFFER_SIZE);
+        final long[] counts = new long[FrequencyCounter.BYTE_SYMBOLS];
+    }
+}
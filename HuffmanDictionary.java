@@ -0,0 +1,289 @@
+package collinsworth_Project4_2015;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * A pretrained code table for compressing many small, similar messages.
+ * The table is trained once from a corpus and saved under a numeric ID;
+ * each compressed message then only carries that ID and its length instead
+ * of its own table, and neither side has to count or build anything per
+ * message. A dictionary holds both the encoder arrays and the table decoder
+ * and never changes once built, so one instance can serve any number of
+ * threads. {@link DictionaryCache} keeps recently used dictionaries built.
+ * <p>
+ * Dictionary file layout (big-endian): int magic "HUFD", byte version,
+ * int ID, int table length, table bytes ({@link CanonicalCode#write}).
+ * <p>
+ * Message frame layout: the dictionary ID and the message length as
+ * unsigned LEB128 varints, then the codes padded to a whole byte.
+ *
+ * @author Tobyn Collinsworth
+ */
+public class HuffmanDictionary
+{
+
+    /**
+     * Identifies a dictionary file, "HUFD"
+     */
+    public static final int MAGIC = 0x48554644;
+
+    /**
+     * Version of the dictionary file layout
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The dictionary ID written in every frame
+     */
+    private final int id;
+
+    /**
+     * The code, which gives every byte value a code
+     */
+    private final CanonicalCode code;
+
+    /**
+     * The decoder built from the code
+     */
+    private final TableDecoder decoder;
+
+    private HuffmanDictionary(int id, CanonicalCode code)
+    {
+        if (id < 0)
+        {
+            throw new IllegalArgumentException("Dictionary IDs must not be negative");
+        }
+        this.id = id;
+        this.code = code;
+        decoder = code.createDecoder(TableDecoder.DEFAULT_LOOKUP_BITS);
+    }
+
+    /**
+     * Trains a dictionary from byte counts. Byte values with a zero count
+     * still get a code so any message can be compressed (see
+     * {@link FrequencyCounter#smoothByteCounts}).
+     *
+     * @param id the dictionary ID
+     * @param counts the count of each byte value in the training corpus
+     * @return the dictionary
+     */
+    public static HuffmanDictionary train(int id, long[] counts)
+    {
+        return new HuffmanDictionary(id, CanonicalCode.fromFrequencies(FrequencyCounter.smoothByteCounts(counts),
+                BlockCodec.MAX_CODE_LENGTH));
+    }
+
+    /**
+     * Trains a dictionary from sample messages.
+     *
+     * @param id the dictionary ID
+     * @param corpus the sample messages
+     * @return the dictionary
+     */
+    public static HuffmanDictionary train(int id, List<byte[]> corpus)
+    {
+        long[] counts = new long[FrequencyCounter.BYTE_SYMBOLS];
+        for (byte[] message : corpus)
+        {
+            FrequencyCounter.countBytesInterleaved(message, 0, message.length, counts);
+        }
+        return train(id, counts);
+    }
+
+    /**
+     * Trains a dictionary from a corpus file.
+     *
+     * @param id the dictionary ID
+     * @param fileName the corpus file
+     * @return the dictionary
+     * @throws IOException if the file cannot be read
+     */
+    public static HuffmanDictionary train(int id, String fileName) throws IOException
+    {
+        try (InputStream in = new FileInputStream(fileName))
+        {
+            return train(id, FrequencyCounter.countBytes(in));
+        }
+    }
+
+    /**
+     * Saves the dictionary to a file.
+     *
+     * @param fileName the file to create
+     * @throws IOException if the file cannot be written
+     */
+    public void save(String fileName) throws IOException
+    {
+        BitWriter table = new BitWriter(256);
+        code.write(table);
+        byte[] tableBytes = table.toByteArray();
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(fileName)))
+        {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(id);
+            out.writeInt(tableBytes.length);
+            out.write(tableBytes);
+        }
+    }
+
+    /**
+     * Loads a dictionary saved by {@link #save}.
+     *
+     * @param fileName the dictionary file
+     * @return the dictionary
+     * @throws IOException if the file cannot be read or is not a valid
+     * dictionary
+     */
+    public static HuffmanDictionary load(String fileName) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(fileName)))
+        {
+            if (in.readInt() != MAGIC)
+            {
+                throw new IOException("Not a Huffman dictionary: " + fileName);
+            }
+            if (in.readByte() != VERSION)
+            {
+                throw new IOException("Unsupported Huffman dictionary version: " + fileName);
+            }
+            int id = in.readInt();
+            int tableLength = in.readInt();
+            if (id < 0 || tableLength < 1 || tableLength > 1 << 16)
+            {
+                throw new IOException("Corrupt Huffman dictionary: " + fileName);
+            }
+            byte[] table = new byte[tableLength];
+            in.readFully(table);
+            CanonicalCode code = CanonicalCode.read(new BitReader(table, 0, 8L * tableLength));
+            for (int b = 0; b < FrequencyCounter.BYTE_SYMBOLS; b++)
+            {
+                if (code.getLength(b) == 0)
+                {
+                    throw new IOException("Corrupt Huffman dictionary: byte " + b + " has no code");
+                }
+            }
+            return new HuffmanDictionary(id, code);
+        }
+    }
+
+    /**
+     * Returns the dictionary ID.
+     *
+     * @return the ID written in every frame
+     */
+    public int getId()
+    {
+        return id;
+    }
+
+    /**
+     * Compresses one message into a frame that names this dictionary.
+     *
+     * @param message the bytes to compress
+     * @return the frame
+     */
+    public byte[] compress(byte[] message)
+    {
+        BitWriter bits = new BitWriter(16 + message.length / 2);
+        writeVarint(bits, id);
+        writeVarint(bits, message.length);
+        try
+        {
+            for (byte b : message)
+            {
+                code.encodeSymbol(bits, b & 0xFF);
+            }
+        } catch (IOException e)
+        {
+            // Every byte has a code and a BitWriter never fails
+            throw new IllegalStateException(e);
+        }
+        return bits.toByteArray();
+    }
+
+    /**
+     * Decompresses a frame written by {@link #compress} with this
+     * dictionary.
+     *
+     * @param frame the frame
+     * @return the message
+     * @throws IOException if the frame is corrupt or names another dictionary
+     */
+    public byte[] decompress(byte[] frame) throws IOException
+    {
+        BitReader in = new BitReader(frame, 0, 8L * frame.length);
+        long frameId = readVarint(in);
+        if (frameId != id)
+        {
+            throw new IOException("Frame was compressed with dictionary " + frameId + ", not " + id);
+        }
+        return decodeMessage(in);
+    }
+
+    /**
+     * Decodes the length and codes of a frame whose ID has been read.
+     *
+     * @param in the frame positioned after the ID
+     * @return the message
+     * @throws IOException if the frame is corrupt
+     */
+    byte[] decodeMessage(BitReader in) throws IOException
+    {
+        long length = readVarint(in);
+        // Every code is at least one bit long, so the frame bounds the message length
+        if (length > in.bitsRemaining())
+        {
+            throw new IOException("Corrupt frame: message length " + length);
+        }
+        byte[] message = new byte[(int) length];
+        for (int i = 0; i < message.length; i++)
+        {
+            message[i] = (byte) decoder.decodeSymbol(in);
+        }
+        if (in.bitsRemaining() >= 8)
+        {
+            throw new IOException("Corrupt frame: extra bytes after the message");
+        }
+        return message;
+    }
+
+    /**
+     * Writes an unsigned LEB128 varint: seven bits per byte, low group
+     * first, high bit set on every byte but the last.
+     */
+    static void writeVarint(BitWriter out, long value)
+    {
+        while ((value & ~0x7FL) != 0)
+        {
+            out.writeBits((value & 0x7F) | 0x80, 8);
+            value >>>= 7;
+        }
+        out.writeBits(value, 8);
+    }
+
+    /**
+     * Reads a varint written by {@link #writeVarint}.
+     */
+    static long readVarint(BitReader in) throws IOException
+    {
+        long value = 0;
+        for (int shift = 0; shift < 35; shift += 7)
+        {
+            int b = in.readBits(8);
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+            {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt frame: varint too long");
+    }
+}
@@ -0,0 +1,199 @@
+package collinsworth_Project4_2015;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * An input stream that decompresses data written by
+ * {@link HuffmanOutputStream}, one frame at a time. Only the current frame's
+ * bits and decoded bytes are held in memory.
+ *
+ * @author Tobyn Collinsworth
+ */
+public class HuffmanInputStream extends InputStream
+{
+
+    /**
+     * The stream supplying the frames
+     */
+    private final DataInputStream in;
+
+    /**
+     * Largest number of bytes a frame may decode to
+     */
+    private final int blockSize;
+
+    /**
+     * Set if Huffman-coded frames may hold several tables
+     */
+    private final boolean multiTable;
+
+    /**
+     * Encoded bits of the current frame
+     */
+    private byte[] bits = new byte[0];
+
+    /**
+     * Decoded bytes of the current frame
+     */
+    private final byte[] block;
+
+    /**
+     * Next byte of {@code block} to return
+     */
+    private int position;
+
+    /**
+     * Number of decoded bytes in {@code block}
+     */
+    private int count;
+
+    /**
+     * Set once the end frame has been read
+     */
+    private boolean finished;
+
+    /**
+     * Creates a decompressing stream and reads the stream header.
+     *
+     * @param in the stream to read the compressed data from
+     * @throws IOException if the header cannot be read or is not valid
+     */
+    public HuffmanInputStream(InputStream in) throws IOException
+    {
+        this.in = new DataInputStream(in);
+        if (this.in.readInt() != HuffmanOutputStream.MAGIC)
+        {
+            throw new IOException("Not a Huffman stream");
+        }
+        if (this.in.readByte() != HuffmanOutputStream.TYPED_VERSION)
+        {
+            throw new IOException("Unsupported Huffman stream version");
+        }
+        blockSize = this.in.readInt();
+        // The header is not trusted to size the block buffer beyond what an encoder writes
+        if (blockSize < 1 || blockSize > HuffmanOutputStream.MAX_BLOCK_SIZE)
+        {
+            throw new IOException("Corrupt Huffman stream: block size " + blockSize);
+        }
+        int tables = this.in.readByte();
+        if (tables < 1 || tables > HuffmanOutputStream.MAX_TABLES)
+        {
+            throw new IOException("Corrupt Huffman stream: " + tables + " tables per frame");
+        }
+        multiTable = tables > 1;
+        block = new byte[blockSize];
+    }
+
+    /**
+     * Returns a channel that decompresses the data read from another channel.
+     *
+     * @param channel the channel to read the compressed data from
+     * @return the decompressing channel; closing it closes {@code channel}
+     * @throws IOException if the stream header cannot be read or is not valid
+     */
+    public static ReadableByteChannel newChannel(ReadableByteChannel channel) throws IOException
+    {
+        return Channels.newChannel(new HuffmanInputStream(Channels.newInputStream(channel)));
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        if (position == count && !nextFrame())
+        {
+            return -1;
+        }
+        return block[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        if (off < 0 || len < 0 || len > b.length - off)
+        {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0)
+        {
+            return 0;
+        }
+        if (position == count && !nextFrame())
+        {
+            return -1;
+        }
+        int n = Math.min(len, count - position);
+        System.arraycopy(block, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available()
+    {
+        return count - position;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        in.close();
+    }
+
+    /**
+     * Reads and decodes the next frame.
+     *
+     * @return {@code false} if the end of the stream has been reached
+     * @throws IOException if the frame cannot be read or is corrupt
+     */
+    private boolean nextFrame() throws IOException
+    {
+        if (finished)
+        {
+            return false;
+        }
+        int symbolCount;
+        int bitLength;
+        try
+        {
+            symbolCount = in.readInt();
+            bitLength = in.readInt();
+        } catch (EOFException e)
+        {
+            throw new IOException("Huffman stream ended without an end marker");
+        }
+        if (symbolCount == 0 && bitLength == 0)
+        {
+            finished = true;
+            return false;
+        }
+        // A frame holds at most its type byte, code tables, table choices and 15 bits per
+        // symbol, well under 16 bits per symbol plus 8 KB
+        if (symbolCount < 1 || symbolCount > blockSize || bitLength < 8
+                || bitLength > 16L * symbolCount + 8 * 8192)
+        {
+            throw new IOException("Corrupt Huffman stream: frame of " + symbolCount + " symbols");
+        }
+        int byteLength = (int) ((bitLength + 7L) / 8);
+        if (bits.length < byteLength)
+        {
+            bits = new byte[byteLength];
+        }
+        in.readFully(bits, 0, byteLength);
+        if (multiTable && bits[0] == BlockCodec.BlockType.HUFFMAN.ordinal())
+        {
+            MultiTableCodec.decode(bits, 1, bitLength - 8, block, 0, symbolCount);
+        }
+        else
+        {
+            BlockCodec.decodeTyped(bits, bitLength, null, 1, block, 0, symbolCount);
+        }
+        position = 0;
+        count = symbolCount;
+        return true;
+    }
+}
@@ -0,0 +1,272 @@
+package collinsworth_Project4_2015;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * An output stream that Huffman-compresses everything written to it in a
+ * single pass, for data whose length is not known in advance. Bytes are
+ * gathered into blocks of a fixed size; each full block (and the partial
+ * block left at {@link #flush} or {@link #close}) is written as one frame
+ * with its own canonical code table. Memory use is bounded by the block size.
+ * <p>
+ * Like a block of a {@link BlockEncoder} container, each frame starts with a
+ * byte giving its {@link BlockCodec.BlockType}, chosen from the frame's
+ * histogram before any code is built, so a frame of data that is already
+ * compressed is copied rather than coded.
+ * <p>
+ * With more than one table per frame, the Huffman-coded frames hold up to
+ * that many tables and the table chosen for every group of bytes (see
+ * {@link MultiTableCodec}), so data whose statistics shift within a frame is
+ * still coded closely.
+ * <p>
+ * Stream layout (big-endian):
+ * <pre>
+ * header  int magic "HUFS", byte version, int block size (1 to {@link #MAX_BLOCK_SIZE}),
+ *         byte tables per frame (1 to {@link #MAX_TABLES})
+ * frames  int symbol count (1 to block size), int bit length, byte type,
+ *         then the bits padded to a whole byte
+ * end     int 0, int 0
+ * </pre>
+ * The bit length of a frame includes its type byte. The stream is read back
+ * by {@link HuffmanInputStream}.
+ *
+ * @author Tobyn Collinsworth
+ */
+public class HuffmanOutputStream extends OutputStream
+{
+
+    /**
+     * Identifies a Huffman stream, "HUFS"
+     */
+    public static final int MAGIC = 0x48554653;
+
+    /**
+     * Version of the stream layout: typed frames, and the number of tables
+     * per frame in the header
+     */
+    public static final int TYPED_VERSION = 3;
+
+    /**
+     * Largest number of tables per frame
+     */
+    public static final int MAX_TABLES = MultiTableCodec.MAX_TABLES;
+
+    /**
+     * Block size used when none is given
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 16;
+
+    /**
+     * Largest block size: a frame holds up to 15 bits per byte plus its
+     * tables, and its bit length must fit the int of the frame header
+     */
+    public static final int MAX_BLOCK_SIZE = 1 << 26;
+
+    /**
+     * The stream receiving the frames
+     */
+    private final DataOutputStream out;
+
+    /**
+     * Bytes of the block being gathered
+     */
+    private final byte[] block;
+
+    /**
+     * Largest number of tables each frame may use
+     */
+    private final int maxTables;
+
+    /**
+     * Number of bytes in {@code block}
+     */
+    private int count;
+
+    /**
+     * Set once the end frame has been written
+     */
+    private boolean finished;
+
+    /**
+     * Creates a compressing stream with the default block size.
+     *
+     * @param out the stream to write the compressed data to
+     * @throws IOException if the stream header cannot be written
+     */
+    public HuffmanOutputStream(OutputStream out) throws IOException
+    {
+        this(out, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates a compressing stream.
+     *
+     * @param out the stream to write the compressed data to
+     * @param blockSize the number of bytes encoded with one code table, at
+     * most {@link #MAX_BLOCK_SIZE}
+     * @throws IOException if the stream header cannot be written
+     */
+    public HuffmanOutputStream(OutputStream out, int blockSize) throws IOException
+    {
+        this(out, blockSize, 1);
+    }
+
+    /**
+     * Creates a compressing stream that may code each frame with several
+     * tables.
+     *
+     * @param out the stream to write the compressed data to
+     * @param blockSize the number of bytes in one frame, at most
+     * {@link #MAX_BLOCK_SIZE}
+     * @param maxTables the largest number of tables per frame, 1 to
+     * {@link #MAX_TABLES}
+     * @throws IOException if the stream header cannot be written
+     */
+    public HuffmanOutputStream(OutputStream out, int blockSize, int maxTables) throws IOException
+    {
+        if (blockSize < 1 || blockSize > MAX_BLOCK_SIZE)
+        {
+            throw new IllegalArgumentException("Block size must be between 1 and " + MAX_BLOCK_SIZE);
+        }
+        if (maxTables < 1 || maxTables > MAX_TABLES)
+        {
+            throw new IllegalArgumentException("Tables per frame must be between 1 and " + MAX_TABLES);
+        }
+        this.out = new DataOutputStream(out);
+        block = new byte[blockSize];
+        this.maxTables = maxTables;
+        this.out.writeInt(MAGIC);
+        this.out.writeByte(TYPED_VERSION);
+        this.out.writeInt(blockSize);
+        this.out.writeByte(maxTables);
+    }
+
+    /**
+     * Returns a channel that compresses everything written to it into another
+     * channel.
+     *
+     * @param channel the channel to write the compressed data to
+     * @return the compressing channel; closing it finishes the stream and
+     * closes {@code channel}
+     * @throws IOException if the stream header cannot be written
+     */
+    public static WritableByteChannel newChannel(WritableByteChannel channel) throws IOException
+    {
+        return Channels.newChannel(new HuffmanOutputStream(Channels.newOutputStream(channel)));
+    }
+
+    @Override
+    public void write(int b) throws IOException
+    {
+        ensureOpen();
+        block[count++] = (byte) b;
+        if (count == block.length)
+        {
+            writeFrame();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+        ensureOpen();
+        if (off < 0 || len < 0 || len > b.length - off)
+        {
+            throw new IndexOutOfBoundsException();
+        }
+        while (len > 0)
+        {
+            int n = Math.min(len, block.length - count);
+            System.arraycopy(b, off, block, count, n);
+            count += n;
+            off += n;
+            len -= n;
+            if (count == block.length)
+            {
+                writeFrame();
+            }
+        }
+    }
+
+    /**
+     * Encodes the bytes gathered so far as a frame, even if the block is not
+     * full, and flushes the underlying stream.
+     *
+     * @throws IOException if the frame cannot be written
+     */
+    @Override
+    public void flush() throws IOException
+    {
+        ensureOpen();
+        writeFrame();
+        out.flush();
+    }
+
+    /**
+     * Writes the last frame and the end marker without closing the
+     * underlying stream.
+     *
+     * @throws IOException if the frames cannot be written
+     */
+    public void finish() throws IOException
+    {
+        if (!finished)
+        {
+            writeFrame();
+            out.writeInt(0);
+            out.writeInt(0);
+            out.flush();
+            finished = true;
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            finish();
+        } finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Encodes the gathered bytes, if any, as one frame after its type byte.
+     *
+     * @throws IOException if the frame cannot be written
+     */
+    private void writeFrame() throws IOException
+    {
+        if (count == 0)
+        {
+            return;
+        }
+        BlockCodec.EncodedBlock encoded = maxTables == 1
+                ? BlockCodec.encodeTyped(block, 0, count, null, 1)
+                : MultiTableCodec.encodeTyped(block, 0, count, maxTables);
+        long bitLength = 8 + encoded.bitLength;
+        if (bitLength > Integer.MAX_VALUE)
+        {
+            throw new IOException("Frame of " + bitLength + " bits is too long for its header");
+        }
+        out.writeInt(encoded.symbolCount);
+        out.writeInt((int) bitLength);
+        out.writeByte(encoded.type.ordinal());
+        out.write(encoded.bytes, encoded.offset, encoded.length);
+        count = 0;
+    }
+
+    private void ensureOpen() throws IOException
+    {
+        if (finished)
+        {
+            throw new IOException("Stream already finished");
+        }
+    }
+}
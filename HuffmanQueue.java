@@ -0,0 +1,23 @@
+package collinsworth_Project4_2015;
+
+/**
+ * A priority queue of Huffman tree nodes keyed by frequency. Building a
+ * Huffman tree only needs these three operations, so the construction loop
+ * can run on any of the implementations chosen through
+ * {@link HuffmanTree.QueueStrategy}.
+ *
+ * @author Tobyn Collinsworth
+ * @param <T> the payload type
+ */
+public interface HuffmanQueue<T>
+{
+
+    // Add a payload with the given key (frequency)
+    void insert(T payload, long key);
+
+    // Remove and return the payload with the smallest key
+    T deque() throws Exception;
+
+    // Returns the number of payloads in the queue
+    int listCount();
+}
@@ -1,355 +1,616 @@
-package collinsworth_Project4_2015;
-
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
-
-/**
- *
- * @author Tobyn Collinsworth & rvolkers
- */
-public class HuffmanTree
-{
-    // Huffman tree node class
-    // Must store character, count, and 2 node references
-    // Only needs one constructor that takes the 4 values
-    private class HtNode
-    {
-        char ch;
-        int count;
-        HtNode left;
-        HtNode right;
-
-        public HtNode(char ch, int count, HtNode left, HtNode right)
-        {
-            this.ch = ch;
-            this.count = count;
-            this.left = left;
-            this.right = right;
-        }
-    }
-
-    // Hash table node class for symbol lookup
-    // Must store character, count, Huffman code string, and node reference
-    // Only needs 1 constructor that accepts the character and reference parameter
-    private class LookupNode
-    {
-        private char ch;
-        private int count;
-        private String hcode;
-        private LookupNode next;
-
-        public LookupNode(char ch, LookupNode next)
-        {
-            this.ch = ch;
-            this.count = 1;
-            this.next = next;
-        }
-    }
-
-    private final int HTSIZE = 1000;
-    private HtNode root;                // root of Huffman tree
-    private LookupNode[] lookupTable;  // hash table for frequency data and code lookup
-    private String fileName;            // name of file to be encoded
-    private OrderedLinkedList<HtNode> orderedList; // priority queue based on node's frequency value
-
-    public HuffmanTree(String fname)
-    {
-        // Save the file name this tree will be build for
-        this.fileName = fname;
-
-        // Call method to read data from the file to be processed into a hash table      
-        analyzeFile();
-
-        // Call method to create an ordered list of nodes based on node frequency
-        createOrderedList();
-
-        // Build the Huffman Tree here in the constructor 
-        try
-        {
-            while (orderedList.listCount() > 1)
-            {
-                HtNode leftNode = orderedList.deque();
-                HtNode rightNode = orderedList.deque();
-
-                HtNode newNode = new HtNode((char) 0, leftNode.count + rightNode.count, leftNode, rightNode);
-                orderedList.insert(newNode, newNode.count);
-            }
-            root = orderedList.deque();
-        } catch (Exception e)
-        {
-            System.out.println(e);
-            System.exit(0);
-        }
-
-        // Call method to put the Huffman codes into the hash table for encoding
-        addCodeToHashTable(root, "");
-
-        // Call method to output the contents of the lookup table
-        displayLookupTable();
-    }
-
-    // Load the lookup table with frequency data from the specified file
-    private void analyzeFile()
-    {
-        // Create the hash table based on size constant
-        lookupTable = new LookupNode[HTSIZE];
-
-        // create a file reader so we can read one character at a time
-        try
-        {
-            try (FileReader fReader = new FileReader(this.fileName))
-            {
-                int charValue = fReader.read();
-                // loop until all characters have been processed
-                while (charValue != -1)
-                {
-                    int hashedIndex = charValue % HTSIZE;
-
-                    // if a list does not exist, just create the node and store the node into the table
-                    if (lookupTable[hashedIndex] == null)
-                    {
-                        lookupTable[hashedIndex] = new LookupNode((char) charValue, null);
-                    }
-                    // if a list does exist, search list to see if the character is already here
-                    else
-                    {
-                        boolean found = false;
-                        LookupNode currentNode = lookupTable[hashedIndex];
-                        while (currentNode != null)
-                        {
-                            // if the character was found just increment its frequency count
-                            if (currentNode.ch == (char) charValue)
-                            {
-                                lookupTable[hashedIndex].count++;
-                                found = true;
-                            }
-                            // if the character was not found insert the new node at the front of the existing list 
-                            else if (currentNode.next == null && found == false)
-                            {
-                                currentNode.next = new LookupNode((char) charValue, lookupTable[hashedIndex]);
-                                break;
-                            }
-                            currentNode = currentNode.next;
-                        }
-                    }
-                    charValue = fReader.read();
-                }
-                fReader.close();
-            }
-        } catch (Exception e)
-        {
-            System.out.println(e);
-            System.exit(0);
-        }
-    }
-
-    // Create the ordered list of Huffman tree nodes from the lookup table data
-    private void createOrderedList()
-    {
-        // Create an ordered linked list of huffman tree nodes
-        orderedList = new OrderedLinkedList<>();
-
-        // Create an HtNode for every character found in the hash table and insert
-        for (int i = 0; i < lookupTable.length; i++)
-        {
-            // the tree node into ordered list based on that character's frequency
-            // Process every non null list in the hash table
-            if (lookupTable[i] != null)
-            {
-                // Create the Huffman node using the hash table node data
-                // Insert the Huffman node based on the frequency of the character
-                orderedList.insert(new HtNode(lookupTable[i].ch, lookupTable[i].count, null, null), lookupTable[i].count);
-
-                LookupNode current = lookupTable[i];
-                while (current.next != null)
-                {
-                    orderedList.insert(new HtNode(current.next.ch, current.next.count, null, null), current.next.count);
-                    current = current.next;
-                }
-            }
-        }
-    }
-
-    //       for every character in the huffman tree
-    //      traverse the path to that node, building a string that represents the huffman code for that symbol
-    //      when symbol reached, store the string into that symbol's entry in the hash table
-    private void addCodeToHashTable(HtNode htnode, String s)
-    {
-        // Base case - Found a real symbol so add its huffman code to that symbol's entry in the hash table
-        if (htnode.right == null && htnode.left == null)
-        {
-            updateHashTable(htnode.ch, s);
-        }
-        // Recursive step - No character at this node, need to recursively process the left and right subtrees
-        // Add '0' to string when going left, add '1' to string going right
-        else
-        {
-            addCodeToHashTable(htnode.left, s + "0");
-            addCodeToHashTable(htnode.right, s + "1");
-        }
-    }
-
-    // Store the Huffman code string into the hash table node for this character
-    private void updateHashTable(char ch, String code)
-    {
-        // Get the hash table index for this character
-        // Get the list from the hash table
-        // Search the list for this character and store the code there
-        for (int i = 0; i < lookupTable.length; i++)
-        {
-            if (lookupTable[i] != null)
-            {
-                if (lookupTable[i].ch == ch)
-                {
-                    lookupTable[i].hcode = code;
-                }
-            }
-        }
-    }
-
-    // Dump the lookup table contents for debugging purposes
-    private void displayLookupTable()
-    {
-        for (LookupNode node : lookupTable)
-        {
-            if (node != null)
-            {
-                System.out.println("Node-" + node.toString() + ": " + "char: " + node.ch + ", count: " + node.count + ", code: " + getHuffmanCode(node.ch));
-            }
-        }
-    
-    }
-
-    // Create the encoded output file using the Huffman codes stored in the hash table
-    public void encodeFile()
-    {   
-        try
-        {
-            // Get a FileReader to read the characters from the original file
-            try (FileReader fReader = new FileReader("data.txt"))
-            {
-                // Create a BitStream to write the Huffman code bits to the output file
-                BitStream bitStream = new BitStream(new File("data.txt.huff"), "w");
-                
-                int charValue = fReader.read();
-                // For each character from the file, get its Huffman Code and add it to the output stream   
-                while (charValue != -1)
-                {
-                    // Get the huffman code string for the character from the hash table
-                    // Build the bits that represent the huffman code into an integer variable
-                    // Bit operations needed.....
-                    // x << 1 shifts all bits in x one position to the left... 
-                    // To set the LSB of a value to 1, just do x |= 1
-                    // To clear the LSB of a value to 0, just do x &= 0xfffffffe
-                    String hcode = getHuffmanCode((char)charValue);
-                    int bits = 0;
-                    
-                    for (int i = 0; i < hcode.length(); i++)
-                    {
-                        if (hcode.charAt(i) == '1')
-                        {
-                            bits <<= 1;
-                            bits |= 1;
-                        }
-                        else
-                        {
-                            bits <<= 1;
-                        }
-                    }        
-                    // Pass the bit stream writer the integer with the bit code and the number of bits in the code
-                    bitStream.writeBits(bits, hcode.length());                    
-                    charValue = fReader.read();
-                }
-                
-                // Write any remaining bit information to the file by closing the bit stream
-                bitStream.close();
-                fReader.close();
-            }
-        } catch (IOException | NumberFormatException e)
-        {
-            System.out.println(e);
-            System.exit(0);
-        }
-
-    }
-
-    // Search the hash table for the Huffman code for the given character
-    private String getHuffmanCode(char ch)
-    {
-        // Get hash value for ch and go to that list in the table        
-        int index = ch % lookupTable.length;
-        
-        if (lookupTable[index].ch == ch)
-        {
-            return lookupTable[index].hcode;
-        }
-         // Search the list to find the character
-        else
-        {
-            LookupNode temp = lookupTable[index];
-            boolean found = false;
-            while (temp.next != null && !found)
-            {                
-                if (temp.ch == ch)
-                {
-                    found = true;                    
-                }
-                temp = temp.next;
-            }           
-            if (found)
-            {
-                return temp.hcode;
-            }
-            else
-            {
-                return "Item Not Found.";
-            }
-        }       
-    }
-
-    // Recreate a data file from an encoded file
-    public void decodeFile()
-    {
-        try
-        {
-            // Create a file writer to write characters to the output file
-            // Create a bit stream reader to read the bits from the encoded file
-            try (FileWriter writer = new FileWriter("decodedOutput.txt"))
-            {
-                BitStream bitStream = new BitStream(new File("data.txt.huff"), "r");
-                
-                HtNode currentNode = root;
-                int bit;
-                
-                // Loop as long as there are bits to read
-                while (bitStream.hasMoreBits())
-                {
-                     // Start decoding at root of Huffman tree
-                    // When we have reached a leaf with a character, output that character
-                    while (currentNode.left != null && currentNode.right != null)
-                    {
-                        bit = bitStream.readBits(1);
-                        
-                        // If a bit that is read is 0, traverse left, else traverse right
-                        if (bit == 0)
-                        {
-                            currentNode = currentNode.left;
-                        }
-                        else
-                        {
-                            currentNode = currentNode.right;
-                        }
-                    }
-                    writer.write(currentNode.ch);                    
-                    currentNode = root;
-                }
-            }
-        } catch (Exception e)
-        {
-            System.out.println(e);
-            System.exit(0);
-        }
-    }
-}
+package collinsworth_Project4_2015;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+
+/**
+ *
+ * @author Tobyn Collinsworth & rvolkers
+ */
+public class HuffmanTree
+{
+    // Available strategies for turning the encoded bits back into characters
+    public enum DecoderType
+    {
+        TREE_WALK,  // follow left/right references one bit at a time
+        TABLE       // resolve whole codes by table lookup, see TableDecoder
+    }
+
+    // Available priority queues for building the tree from the character frequencies
+    public enum QueueStrategy
+    {
+        ORDERED_LIST,   // sorted linked list, O(n) per insert; the reference implementation
+        BINARY_HEAP,    // array-backed binary heap, O(log n) per operation
+        TWO_QUEUE;      // sorted leaves plus a FIFO of merged nodes, O(n) after sorting
+
+        // Create an empty queue of this kind with room for the given number of leaves
+        <T> HuffmanQueue<T> newQueue(int capacity)
+        {
+            switch (this)
+            {
+                case BINARY_HEAP:
+                    return new BinaryHeapQueue<>(capacity);
+                case TWO_QUEUE:
+                    return new TwoQueue<>(capacity);
+                default:
+                    return new OrderedLinkedList<>();
+            }
+        }
+    }
+
+    // Huffman tree node class
+    // Must store character, count, and 2 node references
+    // Only needs one constructor that takes the 4 values
+    private class HtNode
+    {
+        char ch;
+        long count;
+        HtNode left;
+        HtNode right;
+
+        public HtNode(char ch, long count, HtNode left, HtNode right)
+        {
+            this.ch = ch;
+            this.count = count;
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    // Hash table node class for symbol lookup
+    // Must store character, count, and node reference; the code itself lives in codeBits and codeLengths
+    // Only needs 1 constructor that accepts the character and reference parameter
+    private class LookupNode
+    {
+        private char ch;
+        private long count;
+        private LookupNode next;
+
+        public LookupNode(char ch, LookupNode next)
+        {
+            this.ch = ch;
+            this.count = 1;
+            this.next = next;
+        }
+    }
+
+    // Value of maxCodeLength meaning the codes may be as long as the tree is deep
+    public static final int NO_LENGTH_LIMIT = 0;
+
+    private final int HTSIZE = 1000;
+    private HtNode root;                // root of Huffman tree
+    private LookupNode[] lookupTable;  // hash table for frequency data and code lookup
+    private String fileName;            // name of file to be encoded
+    private QueueStrategy queueStrategy;    // kind of priority queue used to build the tree
+    private int leafCount;              // number of distinct characters, the most levels the tree can have
+    private HuffmanQueue<HtNode> orderedList; // priority queue based on node's frequency value
+    private int maxCodeLength;          // longest code allowed, or NO_LENGTH_LIMIT
+    private long[] codeBits;            // Huffman code bits indexed by character, for encoding
+    private byte[] codeLengths;         // Huffman code length indexed by character, 0 if not in the tree
+    private final CompressionMetrics metrics;   // counters and timings of this tree's jobs
+
+    public HuffmanTree(String fname)
+    {
+        this(fname, QueueStrategy.BINARY_HEAP);
+    }
+
+    public HuffmanTree(String fname, QueueStrategy queueStrategy)
+    {
+        this(fname, queueStrategy, NO_LENGTH_LIMIT);
+    }
+
+    public HuffmanTree(String fname, QueueStrategy queueStrategy, int maxCodeLength)
+    {
+        // Save the file name this tree will be build for
+        this.fileName = fname;
+        this.queueStrategy = queueStrategy;
+        this.maxCodeLength = maxCodeLength;
+
+        this.metrics = new CompressionMetrics(fname);
+
+        // Call method to read data from the file to be processed into a hash table      
+        CompressionMetrics.Timer countTimer = metrics.start(CompressionMetrics.Phase.COUNT);
+        try
+        {
+            analyzeFile();
+        } finally
+        {
+            countTimer.stop();
+        }
+
+        CompressionMetrics.Timer buildTimer = metrics.start(CompressionMetrics.Phase.TREE_BUILD);
+        try
+        {
+            // Call method to create an ordered list of nodes based on node frequency
+            createOrderedList();
+
+            // Build the Huffman Tree here in the constructor 
+            try
+            {
+                while (orderedList.listCount() > 1)
+                {
+                    HtNode leftNode = orderedList.deque();
+                    HtNode rightNode = orderedList.deque();
+
+                    HtNode newNode = new HtNode((char) 0, leftNode.count + rightNode.count, leftNode, rightNode);
+                    orderedList.insert(newNode, newNode.count);
+                }
+                root = orderedList.deque();
+            } catch (Exception e)
+            {
+                throw new IllegalStateException("Could not build the Huffman tree", e);
+            }
+
+            // If the tree is deeper than allowed, replace it with the best tree within the limit
+            if (maxCodeLength != NO_LENGTH_LIMIT)
+            {
+                limitCodeLengths();
+            }
+        } finally
+        {
+            buildTimer.stop();
+        }
+
+        CompressionMetrics.Timer codeTimer = metrics.start(CompressionMetrics.Phase.CODE_ASSIGNMENT);
+        try
+        {
+            // Call method to put the Huffman codes into flat arrays for the encoder
+            createCodeArrays();
+        } finally
+        {
+            codeTimer.stop();
+        }
+    }
+
+    // Counters and timings of building this tree and of the files encoded and decoded with it
+    public CompressionMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    // Rebuild the tree so that no code is longer than maxCodeLength
+    // Package-merge picks the optimal lengths within the limit, and the tree is rebuilt
+    // from the canonical codes for those lengths so every encoder and decoder agrees
+    private void limitCodeLengths()
+    {
+        ArrayList<HtNode> leaves = new ArrayList<>();
+        ArrayList<Long> codes = new ArrayList<>();
+        ArrayList<Integer> lengths = new ArrayList<>();
+        collectCodes(root, 0, 0, leaves, codes, lengths);
+
+        int depth = 0;
+        for (int length : lengths)
+        {
+            depth = Math.max(depth, length);
+        }
+        if (depth <= maxCodeLength)
+        {
+            return;
+        }
+
+        int[] symbols = new int[leaves.size()];
+        long[] weights = new long[leaves.size()];
+        for (int i = 0; i < leaves.size(); i++)
+        {
+            symbols[i] = leaves.get(i).ch;
+            weights[i] = leaves.get(i).count;
+        }
+        CanonicalCode code = new CanonicalCode(symbols, PackageMerge.limitCodeLengths(weights, maxCodeLength));
+
+        root = new HtNode((char) 0, 0, null, null);
+        for (HtNode leaf : leaves)
+        {
+            // Follow the code from the root, creating internal nodes as needed, and hang the leaf at the end
+            long bits = code.getCode(leaf.ch);
+            HtNode current = root;
+            for (int i = code.getLength(leaf.ch) - 1; i > 0; i--)
+            {
+                current.count += leaf.count;
+                if (((bits >>> i) & 1) == 0)
+                {
+                    if (current.left == null)
+                    {
+                        current.left = new HtNode((char) 0, 0, null, null);
+                    }
+                    current = current.left;
+                }
+                else
+                {
+                    if (current.right == null)
+                    {
+                        current.right = new HtNode((char) 0, 0, null, null);
+                    }
+                    current = current.right;
+                }
+            }
+            current.count += leaf.count;
+            if ((bits & 1) == 0)
+            {
+                current.left = leaf;
+            }
+            else
+            {
+                current.right = leaf;
+            }
+        }
+    }
+
+    // Load the lookup table with frequency data from the specified file
+    private void analyzeFile()
+    {
+        // Create the hash table based on size constant
+        lookupTable = new LookupNode[HTSIZE];
+
+        // Count the characters a buffer at a time into a primitive frequency map
+        try
+        {
+            CharFrequencyMap frequencies;
+            try (FileReader fReader = new FileReader(this.fileName))
+            {
+                frequencies = FrequencyCounter.countChars(fReader);
+            }
+
+            // Store one node per distinct character, inserted at the front of its hash table list
+            for (int charValue : frequencies.keys())
+            {
+                int hashedIndex = charValue % HTSIZE;
+                lookupTable[hashedIndex] = new LookupNode((char) charValue, lookupTable[hashedIndex]);
+                lookupTable[hashedIndex].count = frequencies.get(charValue);
+            }
+        } catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Create the ordered list of Huffman tree nodes from the lookup table data
+    private void createOrderedList()
+    {
+        // Create the priority queue of huffman tree nodes using the chosen strategy
+        orderedList = queueStrategy.newQueue(lookupTable.length);
+
+        // Create an HtNode for every character found in the hash table and insert
+        for (int i = 0; i < lookupTable.length; i++)
+        {
+            // the tree node into ordered list based on that character's frequency
+            // Process every non null list in the hash table
+            if (lookupTable[i] != null)
+            {
+                // Create the Huffman node using the hash table node data
+                // Insert the Huffman node based on the frequency of the character
+                orderedList.insert(new HtNode(lookupTable[i].ch, lookupTable[i].count, null, null), lookupTable[i].count);
+                leafCount++;
+
+                LookupNode current = lookupTable[i];
+                while (current.next != null)
+                {
+                    orderedList.insert(new HtNode(current.next.ch, current.next.count, null, null), current.next.count);
+                    leafCount++;
+                    current = current.next;
+                }
+            }
+        }
+    }
+
+    // Fill the code arrays, indexed by character, with the code of every leaf in the tree
+    // Encoding then needs two array reads per character instead of a hash table search and a string
+    private void createCodeArrays()
+    {
+        ArrayList<HtNode> leaves = new ArrayList<>();
+        ArrayList<Long> codes = new ArrayList<>();
+        ArrayList<Integer> lengths = new ArrayList<>();
+        collectCodes(root, 0, 0, leaves, codes, lengths);
+
+        int maxChar = 0;
+        for (HtNode leaf : leaves)
+        {
+            maxChar = Math.max(maxChar, leaf.ch);
+        }
+        codeBits = new long[maxChar + 1];
+        codeLengths = new byte[maxChar + 1];
+        for (int i = 0; i < leaves.size(); i++)
+        {
+            codeBits[leaves.get(i).ch] = codes.get(i);
+            codeLengths[leaves.get(i).ch] = lengths.get(i).byteValue();
+            metrics.addSymbol(leaves.get(i).count, lengths.get(i));
+        }
+    }
+
+    // Dump the lookup table contents for debugging purposes
+    // Opt-in diagnostic: the constructor no longer prints the table, call this to see it
+    public void displayLookupTable()
+    {
+        for (LookupNode node : lookupTable)
+        {
+            if (node != null)
+            {
+                System.out.println("Node-" + node.toString() + ": " + "char: " + node.ch + ", count: " + node.count + ", code: " + getHuffmanCode(node.ch));
+            }
+        }
+    
+    }
+
+    // Create the encoded output file using the Huffman codes stored in the hash table
+    public void encodeFile()
+    {   
+        try
+        {
+            CompressionMetrics.Timer encodeTimer = metrics.start(CompressionMetrics.Phase.ENCODE);
+            long bits = 0;
+            long symbols = 0;
+            // Get a FileReader to read the characters from the original file
+            // Create a BitStream to write the Huffman code bits to the output file;
+            // closing it writes any remaining bit information to the file
+            try (FileReader fReader = new FileReader("data.txt");
+                    BitStream bitStream = new BitStream(new File("data.txt.huff"), "w"))
+            {
+                // A tree with a single leaf gives that character an empty code
+                boolean singleLeaf = root.left == null;
+                char[] buffer = new char[FrequencyCounter.BUFFER_SIZE];
+                int n;
+                // For each character from the file, look up its Huffman Code and add it to the output stream
+                while ((n = fReader.read(buffer, 0, buffer.length)) != -1)
+                {
+                    symbols += n;
+                    for (int i = 0; i < n; i++)
+                    {
+                        char ch = buffer[i];
+                        if (ch >= codeLengths.length || (codeLengths[ch] == 0 && !singleLeaf))
+                        {
+                            throw new IOException("Character " + (int) ch + " is not in the Huffman tree");
+                        }
+                        // Pass the bit stream writer the code bits and the number of bits in the code
+                        bitStream.writeBits(codeBits[ch], codeLengths[ch]);
+                        bits += codeLengths[ch];
+                    }
+                }
+            } finally
+            {
+                encodeTimer.stop();
+            }
+            metrics.addSizes(new File("data.txt").length(), new File("data.txt.huff").length(), symbols, bits);
+        } catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+
+    }
+
+    // Spell out the Huffman code for the given character as a string of '0' and '1'
+    // Only the diagnostic dump needs the string, so it is built here on demand rather than stored per character
+    private String getHuffmanCode(char ch)
+    {
+        if (ch >= codeLengths.length || (codeLengths[ch] == 0 && leafCount > 1))
+        {
+            return "Item Not Found.";
+        }
+        char[] digits = new char[codeLengths[ch]];
+        for (int i = 0; i < digits.length; i++)
+        {
+            digits[i] = ((codeBits[ch] >>> (digits.length - 1 - i)) & 1) == 0 ? '0' : '1';
+        }
+        return new String(digits);
+    }
+
+    // Recreate a data file from an encoded file by walking the Huffman tree
+    public void decodeFile()
+    {
+        decodeFile(DecoderType.TREE_WALK);
+    }
+
+    // Recreate a data file from an encoded file using the chosen decoder
+    public void decodeFile(DecoderType decoderType)
+    {
+        try
+        {
+            // Create a file writer to write characters to the output file
+            // Create a bit stream reader to read the bits from the encoded file
+            CompressionMetrics.Timer decodeTimer = metrics.start(CompressionMetrics.Phase.DECODE);
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter("decodedOutput.txt"));
+                    BitStream bitStream = new BitStream(new File("data.txt.huff"), "r"))
+            {
+                if (decoderType == DecoderType.TABLE)
+                {
+                    decodeWithTable(bitStream, writer);
+                }
+                else
+                {
+                    decodeWithTree(bitStream, writer);
+                }
+            } finally
+            {
+                decodeTimer.stop();
+            }
+        } catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Decode the bit stream one bit at a time by following the tree from the root
+    private void decodeWithTree(BitStream bitStream, BufferedWriter writer) throws IOException
+    {
+        HtNode currentNode = root;
+        int bit;
+
+        // Loop as long as there are bits to read
+        while (bitStream.hasMoreBits())
+        {
+            // Start decoding at root of Huffman tree
+            // When we have reached a leaf with a character, output that character
+            while (currentNode.left != null && currentNode.right != null)
+            {
+                bit = bitStream.readBits(1);
+
+                // If a bit that is read is 0, traverse left, else traverse right
+                if (bit == 0)
+                {
+                    currentNode = currentNode.left;
+                }
+                else
+                {
+                    currentNode = currentNode.right;
+                }
+            }
+            writer.write(currentNode.ch);
+            currentNode = root;
+        }
+    }
+
+    // Decode the bit stream a whole code at a time through the lookup tables
+    private void decodeWithTable(BitStream bitStream, BufferedWriter writer) throws IOException
+    {
+        TableDecoder decoder = createTableDecoder();
+        while (bitStream.hasMoreBits())
+        {
+            writer.write(decoder.decodeSymbol(bitStream));
+        }
+    }
+
+    // Build a table decoder holding the code of every leaf in the Huffman tree
+    private TableDecoder createTableDecoder()
+    {
+        ArrayList<HtNode> leaves = new ArrayList<>();
+        ArrayList<Long> codes = new ArrayList<>();
+        ArrayList<Integer> lengths = new ArrayList<>();
+        collectCodes(root, 0, 0, leaves, codes, lengths);
+
+        int[] symbolArray = new int[leaves.size()];
+        long[] codeArray = new long[leaves.size()];
+        int[] lengthArray = new int[leaves.size()];
+        for (int i = 0; i < leaves.size(); i++)
+        {
+            symbolArray[i] = leaves.get(i).ch;
+            codeArray[i] = codes.get(i);
+            // A tree with a single leaf has an empty code and encodes no bits,
+            // but the table still needs a one-bit entry for it
+            lengthArray[i] = Math.max(1, lengths.get(i));
+        }
+        return new TableDecoder(symbolArray, codeArray, lengthArray, TableDecoder.DEFAULT_LOOKUP_BITS);
+    }
+
+    // Build the canonical code that gives every character the same code length as the Huffman tree does
+    public CanonicalCode getCanonicalCode()
+    {
+        ArrayList<HtNode> leaves = new ArrayList<>();
+        ArrayList<Long> codes = new ArrayList<>();
+        ArrayList<Integer> lengths = new ArrayList<>();
+        collectCodes(root, 0, 0, leaves, codes, lengths);
+
+        int[] symbolArray = new int[leaves.size()];
+        int[] lengthArray = new int[leaves.size()];
+        for (int i = 0; i < leaves.size(); i++)
+        {
+            symbolArray[i] = leaves.get(i).ch;
+            // A lone character still needs a one-bit code so its occurrences can be counted back
+            lengthArray[i] = Math.max(1, lengths.get(i));
+        }
+        return new CanonicalCode(symbolArray, lengthArray);
+    }
+
+    // Create a self-describing encoded file: the canonical code table followed by the encoded characters
+    public void encodeCanonicalFile(String inputName, String outputName)
+    {
+        try
+        {
+            CanonicalCode code;
+            CompressionMetrics.Timer codeTimer = metrics.start(CompressionMetrics.Phase.CODE_ASSIGNMENT);
+            try
+            {
+                code = getCanonicalCode();
+            } finally
+            {
+                codeTimer.stop();
+            }
+            CompressionMetrics.Timer encodeTimer = metrics.start(CompressionMetrics.Phase.ENCODE);
+            long bits = 0;
+            long symbols = 0;
+            try (FileReader fReader = new FileReader(inputName);
+                    BitStream bitStream = new BitStream(new File(outputName), "w"))
+            {
+                code.write(bitStream);
+
+                char[] buffer = new char[FrequencyCounter.BUFFER_SIZE];
+                int n;
+                while ((n = fReader.read(buffer, 0, buffer.length)) != -1)
+                {
+                    symbols += n;
+                    for (int i = 0; i < n; i++)
+                    {
+                        code.encodeSymbol(bitStream, buffer[i]);
+                        bits += code.getLength(buffer[i]);
+                    }
+                }
+            } finally
+            {
+                encodeTimer.stop();
+            }
+            metrics.addSizes(new File(inputName).length(), new File(outputName).length(), symbols, bits);
+        } catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Recreate a data file from a file written by encodeCanonicalFile
+    // Only the code table stored in the file is needed, so no HuffmanTree has to be built
+    public static void decodeCanonicalFile(String inputName, String outputName)
+    {
+        try
+        {
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputName));
+                    BitStream bitStream = new BitStream(new File(inputName), "r"))
+            {
+                TableDecoder decoder = CanonicalCode.read(bitStream).createDecoder(TableDecoder.DEFAULT_LOOKUP_BITS);
+                while (bitStream.hasMoreBits())
+                {
+                    writer.write(decoder.decodeSymbol(bitStream));
+                }
+            }
+        } catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Walk the tree depth first, recording each leaf with its code bits and length
+    // An explicit stack replaces recursion: it never holds more than one node per level plus one
+    private void collectCodes(HtNode htnode, long code, int length,
+            ArrayList<HtNode> leaves, ArrayList<Long> codes, ArrayList<Integer> lengths)
+    {
+        HtNode[] nodeStack = new HtNode[leafCount + 2];
+        long[] codeStack = new long[nodeStack.length];
+        int[] lengthStack = new int[nodeStack.length];
+        int top = 0;
+        nodeStack[0] = htnode;
+        codeStack[0] = code;
+        lengthStack[0] = length;
+        while (top >= 0)
+        {
+            HtNode node = nodeStack[top];
+            long nodeCode = codeStack[top];
+            int nodeLength = lengthStack[top--];
+            if (node.right == null && node.left == null)
+            {
+                leaves.add(node);
+                codes.add(nodeCode);
+                lengths.add(nodeLength);
+            }
+            else
+            {
+                // Push the right child first so the left subtree is visited first, as before
+                nodeStack[++top] = node.right;
+                codeStack[top] = (nodeCode << 1) | 1;
+                lengthStack[top] = nodeLength + 1;
+                nodeStack[++top] = node.left;
+                codeStack[top] = nodeCode << 1;
+                lengthStack[top] = nodeLength + 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package collinsworth_Project4_2015;
+
+import java.io.IOException;
+
+/**
+ * Encodes and decodes one block of bytes as four independent bitstreams, as
+ * Zstandard's Huff0 does. The block is cut into four contiguous segments
+ * and each is coded into its own stream, so the decoder can keep four bit
+ * readers in flight: the four table lookups of one loop iteration do not
+ * depend on each other and the processor overlaps them, instead of waiting
+ * for every code length before it can find the next code.
+ * <p>
+ * Codes are limited to {@link #MAX_CODE_LENGTH} bits so every code resolves
+ * with one lookup in a table small enough for the L1 cache, and four codes
+ * always fit in one refill of a 64-bit register. Codes with longer lengths,
+ * such as a shared code built elsewhere, still decode correctly through the
+ * general {@link TableDecoder} path.
+ * <p>
+ * Block layout, all byte-aligned: the block's own code table
+ * ({@link CanonicalCode#write}) padded to a whole byte, if there is no
+ * shared code; the jump table, three ints holding the byte lengths of the
+ * first three streams; then the four streams, each padded to a whole byte.
+ * The segments hold {@code (count + 3) / 4} bytes each, the last one the
+ * rest.
+ *
+ * @author Tobyn Collinsworth
+ */
+final class InterleavedCodec
+{
+
+    /**
+     * Number of streams per block
+     */
+    static final int STREAMS = 4;
+
+    /**
+     * Longest code length used, so a whole code is one lookup of
+     * {@code 2^11} entries
+     */
+    static final int MAX_CODE_LENGTH = 11;
+
+    /**
+     * Size in bytes of the jump table
+     */
+    static final int JUMP_TABLE_BYTES = 4 * (STREAMS - 1);
+
+    /**
+     * Widest root table the fast loop accepts: four codes must fit in the
+     * 56 bits a refill guarantees
+     */
+    private static final int MAX_FAST_BITS = 14;
+
+    private InterleavedCodec()
+    {
+    }
+
+    /**
+     * Encodes one block, building and storing its own code table first if no
+     * shared code is given.
+     *
+     * @param data the array holding the block
+     * @param offset index of the first byte of the block
+     * @param length number of bytes in the block
+     * @param shared the shared code, or {@code null} for a block table
+     * @return the encoded block
+     * @throws IOException if the bits cannot be written
+     */
+    static BlockCodec.EncodedBlock encode(byte[] data, int offset, int length, CanonicalCode shared) throws IOException
+    {
+        return encode(data, offset, length, shared, null);
+    }
+
+    /**
+     * Encodes one block, reusing its histogram if it was already counted.
+     *
+     * @param counts the byte histogram of the block, or {@code null} to
+     * count it if it needs a table
+     */
+    static BlockCodec.EncodedBlock encode(byte[] data, int offset, int length, CanonicalCode shared,
+            long[] counts) throws IOException
+    {
+        if (length == 0)
+        {
+            return new BlockCodec.EncodedBlock(new byte[0], 0, 0);
+        }
+        CanonicalCode code = shared;
+        BitWriter table = new BitWriter(64);
+        if (code == null)
+        {
+            code = CanonicalCode.fromFrequencies(counts != null ? counts : BlockCodec.count(data, offset, length),
+                    MAX_CODE_LENGTH);
+            code.write(table);
+        }
+        byte[] tableBytes = table.toByteArray();
+
+        int segment = (length + STREAMS - 1) / STREAMS;
+        byte[][] streams = new byte[STREAMS][];
+        int total = tableBytes.length + JUMP_TABLE_BYTES;
+        for (int s = 0; s < STREAMS; s++)
+        {
+            int start = Math.min(length, s * segment);
+            int end = Math.min(length, start + segment);
+            BitWriter bits = new BitWriter((end - start) / 2);
+            for (int i = offset + start; i < offset + end; i++)
+            {
+                code.encodeSymbol(bits, data[i] & 0xFF);
+            }
+            streams[s] = bits.toByteArray();
+            total += streams[s].length;
+        }
+
+        byte[] block = new byte[total];
+        System.arraycopy(tableBytes, 0, block, 0, tableBytes.length);
+        int position = tableBytes.length;
+        for (int s = 0; s < STREAMS - 1; s++)
+        {
+            putInt(block, position, streams[s].length);
+            position += 4;
+        }
+        for (byte[] stream : streams)
+        {
+            System.arraycopy(stream, 0, block, position, stream.length);
+            position += stream.length;
+        }
+        return new BlockCodec.EncodedBlock(block, 8L * block.length, length);
+    }
+
+    /**
+     * Decodes one block.
+     *
+     * @param bits the array holding the encoded block
+     * @param start index in {@code bits} of the first byte of the block
+     * @param bitLength the number of encoded bits, a whole number of bytes
+     * @param shared the decoder for the shared code, or {@code null} if the
+     * block starts with its own table
+     * @param out the array to decode into
+     * @param offset index in {@code out} of the first decoded byte
+     * @param count the number of bytes the block decodes to
+     * @throws IOException if the block is corrupt
+     */
+    static void decode(byte[] bits, int start, long bitLength, TableDecoder shared,
+            byte[] out, int offset, int count) throws IOException
+    {
+        if (count == 0)
+        {
+            if (bitLength != 0)
+            {
+                throw new IOException("Corrupt block: bits without symbols");
+            }
+            return;
+        }
+        if (bitLength % 8 != 0 || bitLength / 8 > bits.length - start)
+        {
+            throw new IOException("Corrupt block: interleaved block of " + bitLength + " bits");
+        }
+        // Positions and the end of the block below are indices in bits
+        int length = start + (int) (bitLength / 8);
+        TableDecoder decoder = shared;
+        int position = start;
+        if (decoder == null)
+        {
+            BitReader in = new BitReader(bits, start, bitLength);
+            decoder = CanonicalCode.read(in).createDecoder(MAX_CODE_LENGTH);
+            position = start + (int) ((bitLength - in.bitsRemaining() + 7) / 8);
+        }
+
+        // Stream boundaries from the jump table
+        int[] starts = new int[STREAMS + 1];
+        if (position + JUMP_TABLE_BYTES > length)
+        {
+            throw new IOException("Corrupt block: no jump table");
+        }
+        starts[0] = position + JUMP_TABLE_BYTES;
+        for (int s = 0; s < STREAMS - 1; s++)
+        {
+            int streamLength = getInt(bits, position + 4 * s);
+            if (streamLength < 0 || streamLength > length - starts[s])
+            {
+                throw new IOException("Corrupt block: stream " + s + " runs past the block");
+            }
+            starts[s + 1] = starts[s] + streamLength;
+        }
+        starts[STREAMS] = length;
+
+        int[] table = decoder.singleLevelTable();
+        if (table != null && decoder.rootBits() <= MAX_FAST_BITS)
+        {
+            decodeFast(bits, starts, table, decoder.rootBits(), out, offset, count);
+        }
+        else
+        {
+            decodeGeneral(bits, starts, decoder, out, offset, count);
+        }
+    }
+
+    /**
+     * Decodes the four streams with any decoder, one symbol from each stream
+     * in turn.
+     */
+    private static void decodeGeneral(byte[] bits, int[] starts, TableDecoder decoder,
+            byte[] out, int offset, int count) throws IOException
+    {
+        int segment = (count + STREAMS - 1) / STREAMS;
+        BitReader[] readers = new BitReader[STREAMS];
+        for (int s = 0; s < STREAMS; s++)
+        {
+            readers[s] = new BitReader(bits, starts[s], 8L * (starts[s + 1] - starts[s]));
+        }
+        for (int i = 0; i < segment; i++)
+        {
+            for (int s = 0; s < STREAMS; s++)
+            {
+                int index = s * segment + i;
+                if (index < count)
+                {
+                    out[offset + index] = (byte) decoder.decodeSymbol(readers[s]);
+                }
+            }
+        }
+        for (int s = 0; s < STREAMS; s++)
+        {
+            if (readers[s].bitsRemaining() >= 8)
+            {
+                throw new IOException("Corrupt block: extra bytes after stream " + s);
+            }
+        }
+    }
+
+    /**
+     * Decodes the four streams with the register and lookup of every stream
+     * held in local variables, four symbols from each stream per refill.
+     */
+    private static void decodeFast(byte[] bits, int[] starts, int[] table, int rootBits,
+            byte[] out, int offset, int count) throws IOException
+    {
+        int segment = (count + STREAMS - 1) / STREAMS;
+        int mask = (1 << rootBits) - 1;
+        int invalid = 0;
+
+        // Bit reader state of each stream: register, valid bits, next byte
+        long r0 = 0, r1 = 0, r2 = 0, r3 = 0;
+        int n0 = 0, n1 = 0, n2 = 0, n3 = 0;
+        int p0 = starts[0], p1 = starts[1], p2 = starts[2], p3 = starts[3];
+        int e0 = starts[1], e1 = starts[2], e2 = starts[3], e3 = starts[4];
+
+        // Output position of each stream
+        int o0 = offset;
+        int o1 = offset + Math.min(count, segment);
+        int o2 = offset + Math.min(count, 2 * segment);
+        int o3 = offset + Math.min(count, 3 * segment);
+        int end3 = offset + count;
+
+        // All four segments have at least this many symbols left for the whole loop
+        int rounds = (end3 - o3) / 4;
+        for (int round = 0; round < rounds; round++)
+        {
+            while (n0 <= 56)
+            {
+                r0 = r0 << 8 | (p0 < e0 ? bits[p0] & 0xFF : 0);
+                p0++;
+                n0 += 8;
+            }
+            while (n1 <= 56)
+            {
+                r1 = r1 << 8 | (p1 < e1 ? bits[p1] & 0xFF : 0);
+                p1++;
+                n1 += 8;
+            }
+            while (n2 <= 56)
+            {
+                r2 = r2 << 8 | (p2 < e2 ? bits[p2] & 0xFF : 0);
+                p2++;
+                n2 += 8;
+            }
+            while (n3 <= 56)
+            {
+                r3 = r3 << 8 | (p3 < e3 ? bits[p3] & 0xFF : 0);
+                p3++;
+                n3 += 8;
+            }
+            for (int k = 0; k < 4; k++)
+            {
+                int x0 = table[(int) (r0 >>> (n0 - rootBits)) & mask];
+                int x1 = table[(int) (r1 >>> (n1 - rootBits)) & mask];
+                int x2 = table[(int) (r2 >>> (n2 - rootBits)) & mask];
+                int x3 = table[(int) (r3 >>> (n3 - rootBits)) & mask];
+                n0 -= x0 & 0x3F;
+                n1 -= x1 & 0x3F;
+                n2 -= x2 & 0x3F;
+                n3 -= x3 & 0x3F;
+                out[o0++] = (byte) (x0 >>> 8);
+                out[o1++] = (byte) (x1 >>> 8);
+                out[o2++] = (byte) (x2 >>> 8);
+                out[o3++] = (byte) (x3 >>> 8);
+                // An unused entry has length 0; remember it rather than branch on every symbol
+                invalid |= (x0 & 0x3F) - 1 | (x1 & 0x3F) - 1 | (x2 & 0x3F) - 1 | (x3 & 0x3F) - 1;
+            }
+        }
+
+        // The rest of every segment, one stream at a time
+        long[] registers = {r0, r1, r2, r3};
+        int[] valid = {n0, n1, n2, n3};
+        int[] next = {p0, p1, p2, p3};
+        int[] positions = {o0, o1, o2, o3};
+        for (int s = 0; s < STREAMS; s++)
+        {
+            long r = registers[s];
+            int n = valid[s];
+            int p = next[s];
+            int end = offset + Math.min(count, (s + 1) * segment);
+            for (int o = positions[s]; o < end; o++)
+            {
+                while (n <= 56)
+                {
+                    r = r << 8 | (p < starts[s + 1] ? bits[p] & 0xFF : 0);
+                    p++;
+                    n += 8;
+                }
+                int x = table[(int) (r >>> (n - rootBits)) & mask];
+                n -= x & 0x3F;
+                out[o] = (byte) (x >>> 8);
+                invalid |= (x & 0x3F) - 1;
+            }
+
+            // The bits consumed must end in the last byte of the stream
+            long consumed = 8L * (p - starts[s]) - n;
+            if ((consumed + 7) / 8 != starts[s + 1] - starts[s])
+            {
+                throw new IOException("Corrupt block: stream " + s + " does not match its length");
+            }
+        }
+        if (invalid < 0)
+        {
+            throw new IOException("Invalid Huffman code in input");
+        }
+    }
+
+    private static void putInt(byte[] data, int position, int value)
+    {
+        for (int i = 0; i < 4; i++)
+        {
+            data[position + i] = (byte) (value >>> (24 - 8 * i));
+        }
+    }
+
+    private static int getInt(byte[] data, int position)
+    {
+        int value = 0;
+        for (int i = 0; i < 4; i++)
+        {
+            value = value << 8 | (data[position + i] & 0xFF);
+        }
+        return value;
+    }
+}
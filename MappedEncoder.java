@@ -0,0 +1,290 @@
+package collinsworth_Project4_2015;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compresses a file into a {@link BlockEncoder} container (with one shared
+ * table) by memory-mapping both files. Both passes, counting and encoding,
+ * run directly over the mapped input bytes: there is no charset decoding, no
+ * copying into heap buffers and no read or write call per block.
+ * <p>
+ * The counting pass keeps a histogram per block, so the type and exact bit
+ * length of every block, and with it the whole output layout, is known
+ * before the output is written; the output file is then mapped and filled
+ * in place.
+ * Files larger than 2 GB are handled by mapping both files a window at a
+ * time. The output is byte for byte what {@link BlockEncoder} writes in
+ * {@link BlockEncoder.TableMode#SHARED} mode with the same block size, so it
+ * is read back with {@link BlockDecoder}.
+ *
+ * @author Tobyn Collinsworth
+ */
+public class MappedEncoder
+{
+
+    /**
+     * Largest number of bytes mapped at once
+     */
+    public static final int WINDOW_SIZE = 1 << 30;
+
+    /**
+     * Number of bytes per block
+     */
+    private final int blockSize;
+
+    /**
+     * Creates an encoder with the default block size.
+     */
+    public MappedEncoder()
+    {
+        this(BlockEncoder.DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates an encoder.
+     *
+     * @param blockSize the number of bytes per block, at most
+     * {@link #WINDOW_SIZE}
+     */
+    public MappedEncoder(int blockSize)
+    {
+        if (blockSize < 1 || blockSize > WINDOW_SIZE)
+        {
+            throw new IllegalArgumentException("Block size must be between 1 and " + WINDOW_SIZE);
+        }
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Compresses a file into a block container.
+     *
+     * @param inputName the file to compress
+     * @param outputName the container file to create
+     * @throws IOException if a file cannot be mapped, read or written
+     */
+    public void encodeFile(String inputName, String outputName) throws IOException
+    {
+        try (FileChannel in = FileChannel.open(Paths.get(inputName), StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(Paths.get(outputName), StandardOpenOption.CREATE,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            long length = in.size();
+            int blockCount = (int) ((length + blockSize - 1) / blockSize);
+            // Input windows hold whole blocks so no block is split between two mappings
+            long window = (long) (WINDOW_SIZE / blockSize) * blockSize;
+
+            // First pass: a histogram per block, and their sum for the shared code
+            long[][] blockCounts = new long[blockCount][FrequencyCounter.BYTE_SYMBOLS];
+            long[] counts = new long[FrequencyCounter.BYTE_SYMBOLS];
+            for (long start = 0; start < length; start += window)
+            {
+                int size = (int) Math.min(window, length - start);
+                MappedByteBuffer mapped = in.map(FileChannel.MapMode.READ_ONLY, start, size);
+                for (int offset = 0; offset < size; offset += blockSize)
+                {
+                    int block = (int) ((start + offset) / blockSize);
+                    FrequencyCounter.countBytesInterleaved(mapped, offset,
+                            Math.min(blockSize, size - offset), blockCounts[block]);
+                }
+            }
+            for (long[] block : blockCounts)
+            {
+                for (int b = 0; b < counts.length; b++)
+                {
+                    counts[b] += block[b];
+                }
+            }
+            CanonicalCode code = CanonicalCode.fromFrequencies(counts, BlockEncoder.MAX_CODE_LENGTH);
+            BitWriter table = new BitWriter(64);
+            if (code != null)
+            {
+                code.write(table);
+            }
+            byte[] tableBytes = table.toByteArray();
+
+            // The histograms give the type and exact size of every block, so the whole layout is known now
+            BlockCodec.BlockType[] types = new BlockCodec.BlockType[blockCount];
+            long[] bitLengths = new long[blockCount];
+            long[] offsets = new long[blockCount];
+            long offset = BlockEncoder.HEADER_BYTES + 4 + tableBytes.length;
+            for (int block = 0; block < blockCount; block++)
+            {
+                int blockLength = (int) Math.min(blockSize, length - (long) block * blockSize);
+                types[block] = BlockCodec.chooseType(blockCounts[block], blockLength, code, 0);
+                bitLengths[block] = 8;
+                switch (types[block])
+                {
+                    case STORED:
+                        bitLengths[block] += 8L * blockLength;
+                        break;
+                    case RLE:
+                        bitLengths[block] += 8;
+                        break;
+                    default:
+                        for (int b = 0; b < counts.length; b++)
+                        {
+                            bitLengths[block] += blockCounts[block][b] * code.getLength(b);
+                        }
+                }
+                offsets[block] = offset;
+                offset += (bitLengths[block] + 7) / 8;
+            }
+            long indexOffset = offset;
+            long outputLength = indexOffset + (long) blockCount * BlockEncoder.INDEX_ENTRY_BYTES
+                    + BlockEncoder.TRAILER_BYTES;
+
+            // Second pass: encode straight from the mapped input into the mapped output
+            MappedOutput output = new MappedOutput(out, outputLength);
+            output.putInt(BlockEncoder.MAGIC);
+            output.put((byte) BlockEncoder.TYPED_VERSION);
+            output.put((byte) BlockEncoder.TableMode.SHARED.ordinal());
+            output.putInt(blockSize);
+            output.put((byte) 1);
+            output.putInt(tableBytes.length);
+            for (byte b : tableBytes)
+            {
+                output.put(b);
+            }
+            for (long start = 0; start < length; start += window)
+            {
+                int size = (int) Math.min(window, length - start);
+                MappedByteBuffer mapped = in.map(FileChannel.MapMode.READ_ONLY, start, size);
+                for (int blockStart = 0; blockStart < size; blockStart += blockSize)
+                {
+                    BlockCodec.BlockType type = types[(int) ((start + blockStart) / blockSize)];
+                    int blockEnd = Math.min(size, blockStart + blockSize);
+                    output.put((byte) type.ordinal());
+                    switch (type)
+                    {
+                        case STORED:
+                            output.put(mapped, blockStart, blockEnd);
+                            break;
+                        case RLE:
+                            output.put(mapped.get(blockStart));
+                            break;
+                        default:
+                            for (int i = blockStart; i < blockEnd; i++)
+                            {
+                                int b = mapped.get(i) & 0xFF;
+                                output.writeBits(code.getCode(b), code.getLength(b));
+                            }
+                            output.alignToByte();
+                    }
+                }
+            }
+
+            for (int block = 0; block < blockCount; block++)
+            {
+                output.putLong(offsets[block]);
+                output.putLong(bitLengths[block]);
+                output.putInt((int) Math.min(blockSize, length - (long) block * blockSize));
+            }
+            output.putLong(length);
+            output.putLong(indexOffset);
+            output.putInt(blockCount);
+            output.putInt(BlockEncoder.MAGIC);
+            output.force();
+        }
+    }
+
+    /**
+     * Writes bytes and bits into a file of known length through mapped
+     * windows, mapping the next window when one is full.
+     */
+    private static class MappedOutput implements BitOutput
+    {
+        private final FileChannel channel;
+        private final long length;
+        private MappedByteBuffer window;
+        private long windowStart;
+        private long register;
+        private int registerBits;
+
+        MappedOutput(FileChannel channel, long length) throws IOException
+        {
+            this.channel = channel;
+            this.length = length;
+            windowStart = 0;
+            window = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.min(WINDOW_SIZE, length));
+        }
+
+        void put(byte b) throws IOException
+        {
+            if (!window.hasRemaining())
+            {
+                nextWindow();
+            }
+            window.put(b);
+        }
+
+        // Copy bytes from index from to index to of a buffer, across windows if needed
+        void put(ByteBuffer source, int from, int to) throws IOException
+        {
+            while (from < to)
+            {
+                if (!window.hasRemaining())
+                {
+                    nextWindow();
+                }
+                int n = Math.min(to - from, window.remaining());
+                window.put(source.slice(from, n));
+                from += n;
+            }
+        }
+
+        private void nextWindow() throws IOException
+        {
+            window.force();
+            windowStart += window.capacity();
+            window = channel.map(FileChannel.MapMode.READ_WRITE, windowStart,
+                    Math.min(WINDOW_SIZE, length - windowStart));
+        }
+
+        void putInt(int value) throws IOException
+        {
+            for (int shift = 24; shift >= 0; shift -= 8)
+            {
+                put((byte) (value >>> shift));
+            }
+        }
+
+        void putLong(long value) throws IOException
+        {
+            putInt((int) (value >>> 32));
+            putInt((int) value);
+        }
+
+        @Override
+        public void writeBits(long data, int n) throws IOException
+        {
+            register = (register << n) | (data & ((1L << n) - 1));
+            registerBits += n;
+            while (registerBits >= 8)
+            {
+                registerBits -= 8;
+                put((byte) (register >>> registerBits));
+            }
+        }
+
+        // Pad the bits written so far with zeros to a whole byte
+        void alignToByte() throws IOException
+        {
+            if (registerBits > 0)
+            {
+                put((byte) (register << (8 - registerBits)));
+                registerBits = 0;
+            }
+        }
+
+        void force()
+        {
+            window.force();
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package collinsworth_Project4_2015;
+
+import java.io.IOException;
+
+/**
+ * Encodes and decodes one block of bytes with several code tables, the way
+ * bzip2 does. The block is cut into groups of {@link #GROUP_SIZE} bytes and
+ * every group is coded with whichever of up to {@link #MAX_TABLES} tables
+ * suits it best, so a block whose statistics shift part way through (a run
+ * of JSON, then a base64 blob, then a stack trace) is not forced onto one
+ * compromise code.
+ * <p>
+ * The tables are found by iterative refinement: the groups start out split
+ * into contiguous runs, one per table; each table is built from the
+ * histogram of its groups, each group then moves to the table that codes it
+ * in the fewest bits, and the two steps repeat. This is done for one table,
+ * two tables and so on, keeping the count with the smallest total output
+ * including the tables and the table choices.
+ * <p>
+ * Block bits: 3 bits holding the table count minus one; the tables
+ * ({@link CanonicalCode#write}); if there is more than one table, the
+ * table of each group as its move-to-front index in unary (that many 1 bits,
+ * then a 0); then the codes of the bytes, group by group.
+ *
+ * @author Tobyn Collinsworth
+ */
+final class MultiTableCodec
+{
+
+    /**
+     * Largest number of tables in one block
+     */
+    static final int MAX_TABLES = 6;
+
+    /**
+     * Number of bytes coded with one table choice
+     */
+    static final int GROUP_SIZE = 1024;
+
+    /**
+     * Number of build-and-reassign rounds for each table count
+     */
+    private static final int ITERATIONS = 4;
+
+    private MultiTableCodec()
+    {
+    }
+
+    /**
+     * A set of tables with the table chosen for each group
+     */
+    private static class Plan
+    {
+        final CanonicalCode[] tables;
+        final int[] selectors;
+        final long bitLength;
+
+        Plan(CanonicalCode[] tables, int[] selectors, long bitLength)
+        {
+            this.tables = tables;
+            this.selectors = selectors;
+            this.bitLength = bitLength;
+        }
+    }
+
+    /**
+     * Encodes one block.
+     *
+     * @param data the array holding the block
+     * @param offset index of the first byte of the block
+     * @param length number of bytes in the block, at least 1
+     * @param maxTables the largest number of tables to try, 1 to
+     * {@link #MAX_TABLES}
+     * @return the encoded block
+     * @throws IOException if the bits cannot be written
+     */
+    static BlockCodec.EncodedBlock encode(byte[] data, int offset, int length, int maxTables) throws IOException
+    {
+        int groups = (length + GROUP_SIZE - 1) / GROUP_SIZE;
+        long[][] groupCounts = new long[groups][];
+        long[] blockCounts = new long[FrequencyCounter.BYTE_SYMBOLS];
+        for (int g = 0; g < groups; g++)
+        {
+            int start = offset + g * GROUP_SIZE;
+            groupCounts[g] = BlockCodec.count(data, start, Math.min(GROUP_SIZE, offset + length - start));
+            for (int b = 0; b < blockCounts.length; b++)
+            {
+                blockCounts[b] += groupCounts[g][b];
+            }
+        }
+
+        // Stop adding tables as soon as one more does not pay for itself
+        Plan best = plan(groupCounts, blockCounts, 1);
+        for (int tables = 2; tables <= Math.min(maxTables, groups); tables++)
+        {
+            Plan candidate = plan(groupCounts, blockCounts, tables);
+            if (candidate.bitLength >= best.bitLength)
+            {
+                break;
+            }
+            best = candidate;
+        }
+
+        BitWriter bits = new BitWriter(length / 2);
+        bits.writeBits(best.tables.length - 1, 3);
+        for (CanonicalCode table : best.tables)
+        {
+            table.write(bits);
+        }
+        int[] order = identity(best.tables.length);
+        for (int g = 0; g < groups && best.tables.length > 1; g++)
+        {
+            int selector = best.selectors[g];
+            int index = moveToFront(order, selector);
+            for (int i = 0; i < index; i++)
+            {
+                bits.writeBits(1, 1);
+            }
+            bits.writeBits(0, 1);
+        }
+        for (int g = 0; g < groups; g++)
+        {
+            CanonicalCode table = best.tables[best.selectors[g]];
+            for (int i = offset + g * GROUP_SIZE, end = Math.min(i + GROUP_SIZE, offset + length); i < end; i++)
+            {
+                table.encodeSymbol(bits, data[i] & 0xFF);
+            }
+        }
+        long bitLength = bits.bitLength();
+        return new BlockCodec.EncodedBlock(bits.toByteArray(), bitLength, length);
+    }
+
+    /**
+     * Encodes one block as the type {@link BlockCodec#chooseType} picks from
+     * the histogram of the whole block. The estimate is that of one table,
+     * which several tables only beat by much on data that compresses anyway.
+     *
+     * @param data the array holding the block
+     * @param offset index of the first byte of the block
+     * @param length number of bytes in the block, at least 1
+     * @param maxTables the largest number of tables to try, 1 to
+     * {@link #MAX_TABLES}
+     * @return the encoded block, without its type byte
+     * @throws IOException if the bits cannot be written
+     */
+    static BlockCodec.EncodedBlock encodeTyped(byte[] data, int offset, int length, int maxTables)
+            throws IOException
+    {
+        BlockCodec.BlockType type = BlockCodec.chooseType(BlockCodec.count(data, offset, length), length, null, 3);
+        if (type == BlockCodec.BlockType.HUFFMAN)
+        {
+            BlockCodec.EncodedBlock coded = encode(data, offset, length, maxTables);
+            if (coded.bitLength < 8L * length)
+            {
+                return coded;
+            }
+            type = BlockCodec.BlockType.STORED;
+        }
+        return BlockCodec.uncoded(type, data, offset, length);
+    }
+
+    /**
+     * Decodes one block.
+     *
+     * @param bits the array holding the encoded block
+     * @param start index in {@code bits} of the first byte of the block
+     * @param bitLength the number of encoded bits
+     * @param out the array to decode into
+     * @param offset index in {@code out} of the first decoded byte
+     * @param count the number of bytes the block decodes to, at least 1
+     * @throws IOException if the block is corrupt
+     */
+    static void decode(byte[] bits, int start, long bitLength, byte[] out, int offset, int count)
+            throws IOException
+    {
+        BitReader in = new BitReader(bits, start, bitLength);
+        int tableCount = in.readBits(3) + 1;
+        if (tableCount > MAX_TABLES)
+        {
+            throw new IOException("Corrupt block: " + tableCount + " tables");
+        }
+        TableDecoder[] decoders = new TableDecoder[tableCount];
+        for (int t = 0; t < tableCount; t++)
+        {
+            decoders[t] = CanonicalCode.read(in).createDecoder(TableDecoder.DEFAULT_LOOKUP_BITS);
+        }
+        int groups = (count + GROUP_SIZE - 1) / GROUP_SIZE;
+        int[] selectors = new int[groups];
+        int[] order = identity(tableCount);
+        for (int g = 0; g < groups && tableCount > 1; g++)
+        {
+            int index = 0;
+            while (in.readBits(1) == 1)
+            {
+                if (++index == tableCount)
+                {
+                    throw new IOException("Corrupt block: table choice out of range");
+                }
+            }
+            selectors[g] = order[index];
+            moveToFront(order, selectors[g]);
+        }
+        for (int g = 0; g < groups; g++)
+        {
+            TableDecoder decoder = decoders[selectors[g]];
+            for (int i = offset + g * GROUP_SIZE, end = Math.min(i + GROUP_SIZE, offset + count); i < end; i++)
+            {
+                out[i] = (byte) decoder.decodeSymbol(in);
+            }
+        }
+        if (in.hasMoreBits())
+        {
+            throw new IOException("Corrupt block: extra bits after the last symbol");
+        }
+    }
+
+    /**
+     * Finds a set of tables of the given size by iterative refinement.
+     *
+     * @param groupCounts the byte histogram of each group
+     * @param blockCounts the byte histogram of the whole block
+     * @param tableCount the number of tables
+     * @return the tables, the choice for each group and the total bit length
+     * @throws IOException if a table cannot be measured
+     */
+    private static Plan plan(long[][] groupCounts, long[] blockCounts, int tableCount) throws IOException
+    {
+        int groups = groupCounts.length;
+        int[] selectors = new int[groups];
+        for (int g = 0; g < groups; g++)
+        {
+            selectors[g] = (int) ((long) g * tableCount / groups);
+        }
+        CanonicalCode[] tables = new CanonicalCode[tableCount];
+        long dataBits = 0;
+        for (int iteration = 0; iteration < ITERATIONS; iteration++)
+        {
+            // Build every table from the groups that chose it
+            long[][] tableCounts = new long[tableCount][FrequencyCounter.BYTE_SYMBOLS];
+            for (int g = 0; g < groups; g++)
+            {
+                for (int b = 0; b < FrequencyCounter.BYTE_SYMBOLS; b++)
+                {
+                    tableCounts[selectors[g]][b] += groupCounts[g][b];
+                }
+            }
+            for (int t = 0; t < tableCount; t++)
+            {
+                // Every table must be able to code every byte of the block
+                for (int b = 0; b < FrequencyCounter.BYTE_SYMBOLS; b++)
+                {
+                    if (blockCounts[b] > 0)
+                    {
+                        tableCounts[t][b] = tableCounts[t][b] * 2 + 1;
+                    }
+                }
+                tables[t] = CanonicalCode.fromFrequencies(tableCounts[t], BlockCodec.MAX_CODE_LENGTH);
+            }
+
+            // Move every group to its cheapest table
+            dataBits = 0;
+            for (int g = 0; g < groups; g++)
+            {
+                long bestCost = Long.MAX_VALUE;
+                for (int t = 0; t < tableCount; t++)
+                {
+                    long cost = 0;
+                    for (int b = 0; b < FrequencyCounter.BYTE_SYMBOLS; b++)
+                    {
+                        cost += groupCounts[g][b] * tables[t].getLength(b);
+                    }
+                    if (cost < bestCost)
+                    {
+                        bestCost = cost;
+                        selectors[g] = t;
+                    }
+                }
+                dataBits += bestCost;
+            }
+        }
+
+        long bitLength = 3 + dataBits;
+        BitWriter header = new BitWriter(256);
+        for (CanonicalCode table : tables)
+        {
+            table.write(header);
+        }
+        bitLength += header.bitLength();
+        int[] order = identity(tableCount);
+        for (int g = 0; g < groups && tableCount > 1; g++)
+        {
+            bitLength += moveToFront(order, selectors[g]) + 1;
+        }
+        return new Plan(tables, selectors, bitLength);
+    }
+
+    private static int[] identity(int n)
+    {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++)
+        {
+            order[i] = i;
+        }
+        return order;
+    }
+
+    /**
+     * Moves a table to the front of the recency order.
+     *
+     * @return the position the table had before the move
+     */
+    private static int moveToFront(int[] order, int table)
+    {
+        int index = 0;
+        while (order[index] != table)
+        {
+            index++;
+        }
+        System.arraycopy(order, 0, order, 1, index);
+        order[0] = table;
+        return index;
+    }
+}
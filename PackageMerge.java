@@ -0,0 +1,117 @@
+package collinsworth_Project4_2015;
+
+import java.util.Arrays;
+
+/**
+ * Computes optimal length-limited Huffman code lengths with the
+ * package-merge algorithm of Larmore and Hirschberg. Among all prefix codes
+ * whose longest code is at most the given limit, the lengths returned give
+ * the smallest total encoded size.
+ * <p>
+ * The weights are sorted once. Each of the {@code maxLength - 1} rounds pairs
+ * up neighbouring items of the previous list into packages and merges them
+ * with the original leaves; only a flag per item (package or leaf) is kept.
+ * The cheapest {@code 2n - 2} items of the last list are then unpacked level
+ * by level, and a symbol's code length is the number of levels at which it
+ * was selected. Time and memory are O(n * maxLength).
+ *
+ * @author Tobyn Collinsworth
+ */
+public class PackageMerge
+{
+
+    private PackageMerge()
+    {
+    }
+
+    /**
+     * Computes code lengths for the given weights with no code longer than
+     * {@code maxLength}.
+     *
+     * @param weights the frequency of each symbol, all positive
+     * @param maxLength the longest code length allowed
+     * @return the code length of each symbol, parallel to {@code weights}
+     */
+    public static int[] limitCodeLengths(long[] weights, int maxLength)
+    {
+        int n = weights.length;
+        if (n == 0)
+        {
+            return new int[0];
+        }
+        if (maxLength < 1 || maxLength > BitStream.MAX_BITS
+                || (maxLength < 31 && n > (1 << maxLength)))
+        {
+            throw new IllegalArgumentException("Cannot give " + n
+                    + " symbols codes of at most " + maxLength + " bits");
+        }
+        int[] lengths = new int[n];
+        if (n == 1)
+        {
+            lengths[0] = 1;
+            return lengths;
+        }
+
+        // Sort the symbols by weight; order[j] is the symbol with the j-th smallest weight
+        long[] keys = new long[n];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++)
+        {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(weights[a], weights[b]));
+        for (int j = 0; j < n; j++)
+        {
+            keys[j] = weights[order[j]];
+        }
+
+        // isPackage[level][k] tells whether the k-th item of the list at that level is a package
+        boolean[][] isPackage = new boolean[maxLength][];
+        isPackage[0] = new boolean[n];
+        long[] list = keys;
+        for (int level = 1; level < maxLength; level++)
+        {
+            int packages = list.length / 2;
+            long[] merged = new long[n + packages];
+            boolean[] flags = new boolean[merged.length];
+            int leaf = 0;
+            int pack = 0;
+            for (int k = 0; k < merged.length; k++)
+            {
+                long packWeight = pack < packages ? list[2 * pack] + list[2 * pack + 1] : Long.MAX_VALUE;
+                if (leaf < n && keys[leaf] <= packWeight)
+                {
+                    merged[k] = keys[leaf++];
+                }
+                else
+                {
+                    merged[k] = packWeight;
+                    flags[k] = true;
+                    pack++;
+                }
+            }
+            isPackage[level] = flags;
+            list = merged;
+        }
+
+        // Unpack the 2n - 2 cheapest items, level by level from the top
+        int take = 2 * n - 2;
+        for (int level = maxLength - 1; level >= 0; level--)
+        {
+            int leavesTaken = 0;
+            for (int k = 0; k < take; k++)
+            {
+                if (!isPackage[level][k])
+                {
+                    leavesTaken++;
+                }
+            }
+            for (int j = 0; j < leavesTaken; j++)
+            {
+                lengths[order[j]]++;
+            }
+            take = 2 * (take - leavesTaken);
+        }
+        return lengths;
+    }
+}
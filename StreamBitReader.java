@@ -0,0 +1,174 @@
+package collinsworth_Project4_2015;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a known number of bits, most significant bit first, from an input
+ * stream using the same 64-bit register scheme as {@link BitStream}. The
+ * counterpart of {@link StreamBitWriter}.
+ *
+ * @author Tobyn Collinsworth
+ */
+public class StreamBitReader implements BitInput
+{
+
+    /**
+     * The stream the bits are read from
+     */
+    private final InputStream in;
+
+    /**
+     * Bytes read from the stream but not yet moved into the register
+     */
+    private final byte[] buffer = new byte[FrequencyCounter.BUFFER_SIZE];
+
+    /**
+     * Next byte of {@code buffer} to move into the register
+     */
+    private int position;
+
+    /**
+     * Number of bytes of {@code buffer} in use
+     */
+    private int limit;
+
+    /**
+     * Bytes of the bit run not yet read from the stream
+     */
+    private long bytesLeft;
+
+    /**
+     * Bits read from the stream but not yet consumed, in the low
+     * {@code registerBits} bits
+     */
+    private long register;
+
+    /**
+     * Number of valid bits in the register
+     */
+    private int registerBits;
+
+    /**
+     * Number of bits not yet read
+     */
+    private long bitlength;
+
+    /**
+     * Creates a reader for a run of bits.
+     *
+     * @param in the stream holding the bits; it is not closed by this reader,
+     * and bytes past the padded end of the run are left in it
+     * @param bitLength the number of bits that may be read
+     */
+    public StreamBitReader(InputStream in, long bitLength)
+    {
+        if (bitLength < 0)
+        {
+            throw new IllegalArgumentException("Bit length must not be negative");
+        }
+        this.in = in;
+        this.bitlength = bitLength;
+        this.bytesLeft = (bitLength + 7) / 8;
+    }
+
+    @Override
+    public int readBits(int n) throws IOException
+    {
+        return (int) readLongBits(n);
+    }
+
+    @Override
+    public long readLongBits(int n) throws IOException
+    {
+        if (n < 0 || n > BitStream.MAX_BITS)
+        {
+            throw new IllegalArgumentException("Cannot read " + n + " bits");
+        }
+        if (n > bitlength)
+        {
+            throw new IOException("Unexpected end of data");
+        }
+        if (registerBits < n)
+        {
+            refill();
+        }
+        registerBits -= n;
+        bitlength -= n;
+        return (register >>> registerBits) & ((1L << n) - 1);
+    }
+
+    @Override
+    public long peekBits(int n) throws IOException
+    {
+        if (registerBits < n)
+        {
+            refill();
+            if (registerBits < n)
+            {
+                return (register << (n - registerBits)) & ((1L << n) - 1);
+            }
+        }
+        return (register >>> (registerBits - n)) & ((1L << n) - 1);
+    }
+
+    @Override
+    public void skipBits(int n) throws IOException
+    {
+        if (n > bitlength)
+        {
+            throw new IOException("Unexpected end of data");
+        }
+        if (registerBits < n)
+        {
+            refill();
+        }
+        registerBits -= n;
+        bitlength -= n;
+    }
+
+    @Override
+    public boolean hasMoreBits()
+    {
+        return bitlength > 0;
+    }
+
+    /**
+     * Returns the number of bits not yet read.
+     *
+     * @return the number of remaining bits
+     */
+    public long bitsRemaining()
+    {
+        return bitlength;
+    }
+
+    /**
+     * Moves bytes into the register until it holds more than
+     * {@link BitStream#MAX_BITS} bits or the run is exhausted, reading the
+     * next buffer from the stream when needed.
+     */
+    private void refill() throws IOException
+    {
+        while (registerBits <= 64 - 8)
+        {
+            if (position == limit)
+            {
+                if (bytesLeft == 0)
+                {
+                    return;
+                }
+                limit = in.read(buffer, 0, (int) Math.min(buffer.length, bytesLeft));
+                if (limit < 0)
+                {
+                    throw new EOFException("Stream ended inside the bits");
+                }
+                bytesLeft -= limit;
+                position = 0;
+            }
+            register = (register << 8) | (buffer[position++] & 0xFF);
+            registerBits += 8;
+        }
+    }
+}
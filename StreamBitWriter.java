@@ -0,0 +1,116 @@
+package collinsworth_Project4_2015;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes bits, most significant bit first, to an output stream using the
+ * same 64-bit register scheme as {@link BitStream}. Unlike {@link BitStream}
+ * it writes no header and has no length limit, and unlike {@link BitWriter}
+ * it does not hold the whole output in memory.
+ *
+ * @author Tobyn Collinsworth
+ */
+public class StreamBitWriter implements BitOutput
+{
+
+    /**
+     * The stream the bits are written to
+     */
+    private final OutputStream out;
+
+    /**
+     * Bytes not yet written to the stream
+     */
+    private final byte[] buffer = new byte[FrequencyCounter.BUFFER_SIZE];
+
+    /**
+     * Number of bytes of {@code buffer} in use
+     */
+    private int position;
+
+    /**
+     * Bits not yet moved to the buffer, in the low {@code registerBits} bits
+     */
+    private long register;
+
+    /**
+     * Number of valid bits in the register
+     */
+    private int registerBits;
+
+    /**
+     * Total number of bits written
+     */
+    private long bitlength;
+
+    /**
+     * Creates a writer.
+     *
+     * @param out the stream to write to; it is not closed by this writer
+     */
+    public StreamBitWriter(OutputStream out)
+    {
+        this.out = out;
+    }
+
+    /**
+     * Writes the low {@code n} bits of a long, most significant bit first.
+     *
+     * @param data the long containing the bits to be written
+     * @param n the number of bits to be written, at most {@link BitStream#MAX_BITS}
+     * @throws IOException if the stream cannot be written
+     */
+    @Override
+    public void writeBits(long data, int n) throws IOException
+    {
+        if (n < 0 || n > BitStream.MAX_BITS)
+        {
+            throw new IllegalArgumentException("Cannot write " + n + " bits");
+        }
+        bitlength += n;
+        register = (register << n) | (data & ((1L << n) - 1));
+        registerBits += n;
+        if (registerBits >= 8)
+        {
+            if (position + 8 > buffer.length)
+            {
+                out.write(buffer, 0, position);
+                position = 0;
+            }
+            while (registerBits >= 8)
+            {
+                registerBits -= 8;
+                buffer[position++] = (byte) (register >>> registerBits);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bits written.
+     *
+     * @return the bit length
+     */
+    public long bitLength()
+    {
+        return bitlength;
+    }
+
+    /**
+     * Pads the bits written so far with zeros to a whole byte and writes
+     * them to the stream. The writer can no longer be used afterwards.
+     *
+     * @throws IOException if the stream cannot be written
+     */
+    public void finish() throws IOException
+    {
+        if (registerBits > 0)
+        {
+            buffer[position++] = (byte) (register << (8 - registerBits));
+            registerBits = 0;
+        }
+        out.write(buffer, 0, position);
+        position = 0;
+        out.flush();
+    }
+}
@@ -0,0 +1,275 @@
+package collinsworth_Project4_2015;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Decodes Huffman codes by table lookup instead of walking the tree one bit at
+ * a time. The decoder peeks a fixed number of bits from the input and looks
+ * them up in a root table whose entries give the symbol and the length of its
+ * code, so every code no longer than the lookup width is resolved with a
+ * single lookup. Codes longer than the lookup width go through a chain of
+ * secondary tables, each indexed by the next few bits of the code.
+ *
+ * @author Tobyn Collinsworth
+ */
+public class TableDecoder
+{
+
+    /**
+     * Lookup width used when none is given; 2^10 root entries keep the table
+     * small enough to stay in the L1 cache
+     */
+    public static final int DEFAULT_LOOKUP_BITS = 10;
+
+    /**
+     * Largest lookup width accepted for a single table
+     */
+    public static final int MAX_LOOKUP_BITS = 16;
+
+    /**
+     * Flag set in an entry that points to a secondary table
+     */
+    private static final int LINK_FLAG = 0x40;
+
+    /**
+     * Mask for the code length (or secondary table width) in an entry
+     */
+    private static final int LENGTH_MASK = 0x3F;
+
+    /**
+     * All tables, root table first. A symbol entry holds
+     * {@code symbol << 8 | codeLength}; a link entry holds
+     * {@code offset << 8 | LINK_FLAG | tableBits}; an unused entry is 0.
+     */
+    private int[] table;
+
+    /**
+     * Number of entries of {@code table} in use
+     */
+    private int size;
+
+    /**
+     * Number of bits used to index the root table
+     */
+    private final int rootBits;
+
+    /**
+     * Largest number of bits used to index any one table
+     */
+    private final int lookupBits;
+
+    /**
+     * Builds the decoding tables for a set of codes. The arrays are parallel:
+     * entry {@code i} describes the code of {@code symbols[i]}.
+     *
+     * @param symbols the symbol of each code
+     * @param codes the bits of each code, right-aligned
+     * @param lengths the length in bits of each code, 1 to
+     * {@link BitStream#MAX_BITS}
+     * @param lookupBits the number of bits to resolve per table lookup
+     */
+    public TableDecoder(int[] symbols, long[] codes, int[] lengths, int lookupBits)
+    {
+        if (lookupBits < 1 || lookupBits > MAX_LOOKUP_BITS)
+        {
+            throw new IllegalArgumentException("Lookup width must be between 1 and "
+                    + MAX_LOOKUP_BITS + " bits");
+        }
+        int maxLength = 0;
+        int[] members = new int[symbols.length];
+        for (int i = 0; i < symbols.length; i++)
+        {
+            if (lengths[i] < 1 || lengths[i] > BitStream.MAX_BITS)
+            {
+                throw new IllegalArgumentException("Invalid code length " + lengths[i]
+                        + " for symbol " + symbols[i]);
+            }
+            maxLength = Math.max(maxLength, lengths[i]);
+            members[i] = i;
+        }
+        this.lookupBits = lookupBits;
+        rootBits = Math.max(1, Math.min(lookupBits, maxLength));
+        table = new int[1 << rootBits];
+        size = table.length;
+        fillTable(0, rootBits, 0, members, members.length, symbols, codes, lengths);
+    }
+
+    /**
+     * Fills one table with the codes that share the prefix leading to it.
+     *
+     * @param offset position of the table in {@code table}
+     * @param bits number of bits indexing the table
+     * @param consumed number of code bits consumed before reaching the table
+     * @param members indices of the codes that belong in the table
+     * @param count number of valid entries in {@code members}
+     * @param symbols the symbol of each code
+     * @param codes the bits of each code
+     * @param lengths the length of each code
+     */
+    private void fillTable(int offset, int bits, int consumed, int[] members, int count,
+            int[] symbols, long[] codes, int[] lengths)
+    {
+        // Short codes fill every entry whose leading bits match the code;
+        // long codes are only counted here and handed to a secondary table
+        int[] groupSize = null;
+        int[] groupRest = null;
+        for (int m = 0; m < count; m++)
+        {
+            int i = members[m];
+            int rest = lengths[i] - consumed;
+            if (rest <= bits)
+            {
+                int first = (int) (codes[i] & mask(rest)) << (bits - rest);
+                Arrays.fill(table, offset + first, offset + first + (1 << (bits - rest)),
+                        symbols[i] << 8 | lengths[i]);
+            }
+            else
+            {
+                if (groupSize == null)
+                {
+                    groupSize = new int[1 << bits];
+                    groupRest = new int[1 << bits];
+                }
+                int index = (int) ((codes[i] >>> (rest - bits)) & mask(bits));
+                groupSize[index]++;
+                groupRest[index] = Math.max(groupRest[index], rest - bits);
+            }
+        }
+        if (groupSize == null)
+        {
+            return;
+        }
+
+        // Gather the long codes by the index they fall under, then build a
+        // secondary table for each index
+        int[] start = new int[(1 << bits) + 1];
+        for (int index = 0; index < groupSize.length; index++)
+        {
+            start[index + 1] = start[index] + groupSize[index];
+        }
+        int[] grouped = new int[start[groupSize.length]];
+        int[] next = Arrays.copyOf(start, groupSize.length);
+        for (int m = 0; m < count; m++)
+        {
+            int i = members[m];
+            int rest = lengths[i] - consumed;
+            if (rest > bits)
+            {
+                int index = (int) ((codes[i] >>> (rest - bits)) & mask(bits));
+                grouped[next[index]++] = i;
+            }
+        }
+        for (int index = 0; index < groupSize.length; index++)
+        {
+            if (groupSize[index] == 0)
+            {
+                continue;
+            }
+            int subBits = Math.min(lookupBits, groupRest[index]);
+            int subOffset = allocate(1 << subBits);
+            table[offset + index] = subOffset << 8 | LINK_FLAG | subBits;
+            int[] subMembers = Arrays.copyOfRange(grouped, start[index], start[index + 1]);
+            fillTable(subOffset, subBits, consumed + bits, subMembers, subMembers.length,
+                    symbols, codes, lengths);
+        }
+    }
+
+    /**
+     * Reserves room for a secondary table at the end of {@code table}.
+     *
+     * @param entries the number of entries in the new table
+     * @return the offset of the new table
+     */
+    private int allocate(int entries)
+    {
+        if (size + entries > table.length)
+        {
+            table = Arrays.copyOf(table, Math.max(table.length * 2, size + entries));
+        }
+        int offset = size;
+        size += entries;
+        return offset;
+    }
+
+    /**
+     * Returns a mask selecting the low {@code n} bits of a long.
+     *
+     * @param n the number of bits, at most 63
+     * @return the mask
+     */
+    private static long mask(int n)
+    {
+        return (1L << n) - 1;
+    }
+
+    /**
+     * Reads one code from the bitstream and returns its symbol.
+     *
+     * @param in the bitstream positioned at the start of a code
+     * @return the decoded symbol
+     * @throws IOException if the bits do not form a valid code or run out
+     */
+    public int decodeSymbol(BitInput in) throws IOException
+    {
+        int entry = table[(int) in.peekBits(rootBits)];
+        int consumed = rootBits;
+        while ((entry & LINK_FLAG) != 0)
+        {
+            int bits = entry & LENGTH_MASK;
+            consumed += bits;
+            entry = table[(entry >>> 8) + (int) (in.peekBits(consumed) & mask(bits))];
+        }
+        int length = entry & LENGTH_MASK;
+        if (length == 0)
+        {
+            throw new IOException("Invalid Huffman code in input");
+        }
+        in.skipBits(length);
+        return entry >>> 8;
+    }
+
+    /**
+     * Returns the root table if every code is resolved by it, for decoders
+     * that inline the lookup into their own loop. Each entry holds
+     * {@code symbol << 8 | codeLength}, or 0 for bits that start no code.
+     *
+     * @return the root table, or {@code null} if there are secondary tables
+     */
+    int[] singleLevelTable()
+    {
+        return size == 1 << rootBits ? table : null;
+    }
+
+    /**
+     * Returns the number of bits used to index the root table.
+     *
+     * @return the root table width
+     */
+    int rootBits()
+    {
+        return rootBits;
+    }
+
+    /**
+     * Returns the number of entries across the root and secondary tables.
+     *
+     * @return the total number of table entries
+     */
+    public int tableEntries()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the number of bytes held by the tables, including any room
+     * reserved for secondary tables but not used. The array header, which
+     * depends on the JVM, is not included.
+     *
+     * @return the size of the tables in bytes
+     */
+    public long tableBytes()
+    {
+        return 4L * table.length;
+    }
+}
@@ -1,28 +1,218 @@
-/**
- * Project 4 for CS 1181
- * Creates a huffman tree based on character frequency from a file and then 
- * uses a bitstream to encode the data into a new file. The encoded file is then
- * decoded using the values found in the huffman tree.
- */
-package collinsworth_Project4_2015;
-
-/**
- * @author Tobyn Collinsworth & rvolkers
- * CS1181
- * Instructor: R. Volkers
- * TA: R. Brant
- */
-public class TestDriver {
-
-    /**
-     * @param args the command line arguments
-     */
-    public static void main(String[] args) 
-    {
-        HuffmanTree ht = new HuffmanTree("data.txt");
-        ht.encodeFile();
-        System.out.println("Encoding done");
-        ht.decodeFile();
-        System.out.println("Decoding done");            
-    }    
-}
+/**
+ * Project 4 for CS 1181
+ * Creates a huffman tree based on character frequency from a file and then 
+ * uses a bitstream to encode the data into a new file. The encoded file is then
+ * decoded using the values found in the huffman tree.
+ */
+package collinsworth_Project4_2015;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * @author Tobyn Collinsworth & rvolkers
+ * CS1181
+ * Instructor: R. Volkers
+ * TA: R. Brant
+ */
+public class TestDriver {
+
+    /**
+     * @param args the command line arguments
+     * @throws IOException if a block container or stream cannot be written or read
+     */
+    public static void main(String[] args) throws IOException
+    {
+        HuffmanTree ht = new HuffmanTree("data.txt");
+        // The lookup table dump is a diagnostic, shown only when asked for
+        if (args.length > 0 && args[0].equals("-table"))
+        {
+            ht.displayLookupTable();
+        }
+        ht.encodeFile();
+        System.out.println("Encoding done");
+        // Decode the same file with both decoders to compare their speed
+        long start = System.nanoTime();
+        ht.decodeFile(HuffmanTree.DecoderType.TREE_WALK);
+        System.out.println("Decoding done (tree walk, " + (System.nanoTime() - start) / 1000000 + " ms)");
+        start = System.nanoTime();
+        ht.decodeFile(HuffmanTree.DecoderType.TABLE);
+        System.out.println("Decoding done (table, " + (System.nanoTime() - start) / 1000000 + " ms)");
+
+        // Round trip through a self-describing file that a separate process could decode
+        ht.encodeCanonicalFile("data.txt", "data.txt.chuff");
+        HuffmanTree.decodeCanonicalFile("data.txt.chuff", "decodedCanonical.txt");
+        System.out.println("Canonical round trip done");
+        System.out.println(ht.getMetrics().toJson());
+
+        // Round trip through the block container, encoding blocks on all cores
+        new BlockEncoder().encodeFile("data.txt", "data.txt.hufb");
+        new BlockDecoder().decodeFile("data.txt.hufb", "decodedBlocks.txt");
+        System.out.println("Block round trip done");
+
+        // The same with each block split into four streams decoded side by side
+        new BlockEncoder(BlockEncoder.DEFAULT_BLOCK_SIZE, BlockEncoder.TableMode.PER_BLOCK,
+                ForkJoinPool.commonPool(), InterleavedCodec.STREAMS).encodeFile("data.txt", "data.txt.hufi");
+        new BlockDecoder().decodeFile("data.txt.hufi", "decodedInterleaved.txt");
+        System.out.println("Interleaved block round trip done");
+
+        // Text, random bytes that do not compress and a run of one byte: each block picks its own type
+        byte[] text = Files.readAllBytes(Paths.get("data.txt"));
+        byte[] mixed = Arrays.copyOf(text, 3 * text.length);
+        byte[] noise = new byte[text.length];
+        new Random(25).nextBytes(noise);
+        System.arraycopy(noise, 0, mixed, text.length, noise.length);
+        Files.write(Paths.get("mixed.bin"), mixed);
+        new BlockEncoder(1 << 16, BlockEncoder.TableMode.PER_BLOCK, ForkJoinPool.commonPool())
+                .encodeFile("mixed.bin", "mixed.bin.hufb");
+        new BlockDecoder().decodeFile("mixed.bin.hufb", "decodedMixed.bin");
+        new MappedEncoder(1 << 16).encodeFile("mixed.bin", "mixed.bin.hufm");
+        new BlockEncoder(1 << 16, BlockEncoder.TableMode.SHARED, ForkJoinPool.commonPool())
+                .encodeFile("mixed.bin", "mixed.bin.hufs");
+        if (!Arrays.equals(mixed, Files.readAllBytes(Paths.get("decodedMixed.bin")))
+                || !Arrays.equals(Files.readAllBytes(Paths.get("mixed.bin.hufm")),
+                        Files.readAllBytes(Paths.get("mixed.bin.hufs"))))
+        {
+            throw new IOException("Typed block round trip does not match");
+        }
+        System.out.println("Typed block round trip done (" + mixed.length + " to "
+                + Files.size(Paths.get("mixed.bin.hufb")) + " bytes)");
+
+        // Round trip through the streaming API, the way a socket or pipe would use it
+        try (InputStream in = new FileInputStream("data.txt");
+                OutputStream out = new HuffmanOutputStream(new FileOutputStream("data.txt.hufs")))
+        {
+            in.transferTo(out);
+        }
+        try (InputStream in = new HuffmanInputStream(new FileInputStream("data.txt.hufs"));
+                OutputStream out = new FileOutputStream("decodedStream.txt"))
+        {
+            in.transferTo(out);
+        }
+        System.out.println("Stream round trip done");
+
+        // The same with up to six tables per frame, chosen per group of bytes
+        try (InputStream in = new FileInputStream("data.txt");
+                OutputStream out = new HuffmanOutputStream(new FileOutputStream("data.txt.hufm"),
+                        HuffmanOutputStream.DEFAULT_BLOCK_SIZE, HuffmanOutputStream.MAX_TABLES))
+        {
+            in.transferTo(out);
+        }
+        try (InputStream in = new HuffmanInputStream(new FileInputStream("data.txt.hufm"));
+                OutputStream out = new FileOutputStream("decodedMultiTable.txt"))
+        {
+            in.transferTo(out);
+        }
+        System.out.println("Multi-table stream round trip done");
+
+        // The mixed bytes through a stream, whose frames pick their types the same way
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        try (OutputStream out = new HuffmanOutputStream(streamed, 1 << 16, HuffmanOutputStream.MAX_TABLES))
+        {
+            out.write(mixed);
+        }
+        try (InputStream in = new HuffmanInputStream(new ByteArrayInputStream(streamed.toByteArray())))
+        {
+            if (!Arrays.equals(mixed, in.readAllBytes()))
+            {
+                throw new IOException("Typed stream round trip does not match");
+            }
+        }
+        System.out.println("Typed stream round trip done (" + mixed.length + " to " + streamed.size() + " bytes)");
+
+        // Round trip through the byte coder, which reads the file as raw bytes rather than text
+        ByteHuffman.encodeFile("data.txt", "data.txt.huf8");
+        ByteHuffman.decodeFile("data.txt.huf8", "decodedBytes.txt");
+        System.out.println("Byte round trip done");
+
+        // Read ranges straight out of the middle of a byte-coded file through its checkpoint index
+        ByteHuffman.encodeFile("data.txt", "data.txt.huf8", "data.txt.hufx", 4096);
+        byte[] original = Files.readAllBytes(Paths.get("data.txt"));
+        try (FileChannel channel = FileChannel.open(Paths.get("data.txt.huf8"), StandardOpenOption.READ))
+        {
+            CheckpointIndex checkpoints = CheckpointIndex.load("data.txt.hufx", channel);
+            for (int offset = 0; offset < original.length; offset += 9973)
+            {
+                int count = Math.min(1000, original.length - offset);
+                if (!Arrays.equals(checkpoints.readRange(channel, offset, count),
+                        Arrays.copyOfRange(original, offset, offset + count)))
+                {
+                    throw new IOException("Range read at " + offset + " does not match the input");
+                }
+            }
+        }
+        System.out.println("Random access reads done");
+
+        // Round trip through the order-1 coder, which picks each byte's table by the byte before it
+        ContextHuffman.encodeFile("data.txt", "data.txt.hufc");
+        ContextHuffman.decodeFile("data.txt.hufc", "decodedContext.txt");
+        System.out.println("Context round trip done");
+
+        // Round trip through the single-pass adaptive coder, which needs no code table
+        AdaptiveHuffman.encodeFile("data.txt", "data.txt.ahuff");
+        AdaptiveHuffman.decodeFile("data.txt.ahuff", "decodedAdaptive.txt");
+        System.out.println("Adaptive round trip done");
+
+        // Round trip of short lines through a dictionary trained once from the whole file
+        HuffmanDictionary.train(1, "data.txt").save("data.txt.hufd");
+        DictionaryCache dictionaries = DictionaryCache.forFiles("data.txt.hufd", 4);
+        for (String line : Files.readAllLines(Paths.get("data.txt"), StandardCharsets.UTF_8))
+        {
+            byte[] message = line.getBytes(StandardCharsets.UTF_8);
+            byte[] frame = dictionaries.get(1).compress(message);
+            if (!Arrays.equals(message, dictionaries.decompress(frame)))
+            {
+                throw new IOException("Dictionary round trip changed a line: " + line);
+            }
+        }
+        System.out.println("Dictionary round trip done");
+
+        // Round trip of the same lines as independent payloads, compressed in parallel by one shared codec
+        List<byte[]> payloads = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get("data.txt"), StandardCharsets.UTF_8))
+        {
+            payloads.add(line.getBytes(StandardCharsets.UTF_8));
+        }
+        try (CompressionService service = new CompressionService(HuffmanCodec.builder().train(payloads).build()))
+        {
+            List<byte[]> decoded = service.decompressAll(service.compressAll(payloads));
+            for (int i = 0; i < payloads.size(); i++)
+            {
+                if (!Arrays.equals(payloads.get(i), decoded.get(i)))
+                {
+                    throw new IOException("Service round trip changed line " + (i + 1));
+                }
+            }
+        }
+        System.out.println("Service round trip done");
+
+        // The same lines packed into one buffer that shares a single code table
+        HuffmanBatch packed = HuffmanBatch.compress(payloads);
+        HuffmanBatch batch = HuffmanBatch.wrap(packed.buffer(), packed.offsets());
+        byte[] record = new byte[original.length];
+        for (int i = 0; i < payloads.size(); i++)
+        {
+            int length = batch.decompress(i, record, 0);
+            if (!Arrays.equals(payloads.get(i), Arrays.copyOf(record, length)))
+            {
+                throw new IOException("Batch round trip changed line " + (i + 1));
+            }
+        }
+        System.out.println("Batch round trip done (" + batch.buffer().length + " bytes)");
+    }    
+}
@@ -0,0 +1,153 @@
+package collinsworth_Project4_2015;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Linear-time Huffman construction queue (van Leeuwen's two-queue method).
+ * The leaves are inserted first and kept in one queue sorted by frequency;
+ * every node inserted after the first deque is a merged node, and because
+ * merged nodes are created in non-decreasing order of weight they can simply
+ * be appended to a second queue. The smallest item is always at the front of
+ * one of the two queues, so every operation after the leaves are sorted is
+ * O(1). Leaves that arrive already sorted are detected and not sorted again.
+ *
+ * @author Tobyn Collinsworth
+ * @param <T> the payload type
+ */
+public class TwoQueue<T> implements HuffmanQueue<T>
+{
+
+    // Queue of leaves, sorted by key before the first deque
+    private long[] leafKeys;
+    private Object[] leaves;
+    private int leafHead = 0;
+    private int leafTail = 0;
+    private boolean leavesSorted = true;
+
+    // Queue of merged nodes, sorted because keys are appended in order
+    private long[] mergedKeys;
+    private Object[] merged;
+    private int mergedHead = 0;
+    private int mergedTail = 0;
+
+    // Set by the first deque; every later insert is a merged node
+    private boolean building = false;
+
+    public TwoQueue()
+    {
+        this(16);
+    }
+
+    // Create a queue with room for the given number of leaves before it has to grow
+    public TwoQueue(int capacity)
+    {
+        leafKeys = new long[Math.max(1, capacity)];
+        leaves = new Object[leafKeys.length];
+        mergedKeys = new long[leafKeys.length];
+        merged = new Object[leafKeys.length];
+    }
+
+    // Append to the leaf queue while loading, and to the merged queue once building has started
+    @Override
+    public void insert(T payload, long key)
+    {
+        if (!building)
+        {
+            if (leafTail == leafKeys.length)
+            {
+                leafKeys = Arrays.copyOf(leafKeys, leafTail * 2);
+                leaves = Arrays.copyOf(leaves, leafTail * 2);
+            }
+            if (leafTail > 0 && key < leafKeys[leafTail - 1])
+            {
+                leavesSorted = false;
+            }
+            leafKeys[leafTail] = key;
+            leaves[leafTail++] = payload;
+            return;
+        }
+
+        if (mergedTail > mergedHead && key < mergedKeys[mergedTail - 1])
+        {
+            throw new IllegalArgumentException(
+                    "Merged nodes must be inserted in non-decreasing key order");
+        }
+        if (mergedTail == mergedKeys.length)
+        {
+            // Only the live part of the queue is kept when it has to grow
+            int live = mergedTail - mergedHead;
+            long[] newKeys = new long[Math.max(live * 2, 16)];
+            Object[] newMerged = new Object[newKeys.length];
+            System.arraycopy(mergedKeys, mergedHead, newKeys, 0, live);
+            System.arraycopy(merged, mergedHead, newMerged, 0, live);
+            mergedKeys = newKeys;
+            merged = newMerged;
+            mergedHead = 0;
+            mergedTail = live;
+        }
+        mergedKeys[mergedTail] = key;
+        merged[mergedTail++] = payload;
+    }
+
+    // Remove the smaller of the two queue fronts, preferring the leaf on a tie
+    @Override
+    @SuppressWarnings("unchecked")
+    public T deque() throws Exception
+    {
+        if (!building)
+        {
+            building = true;
+            if (!leavesSorted)
+            {
+                sortLeaves();
+            }
+        }
+        T item;
+        if (leafHead < leafTail
+                && (mergedHead == mergedTail || leafKeys[leafHead] <= mergedKeys[mergedHead]))
+        {
+            item = (T) leaves[leafHead];
+            leaves[leafHead++] = null;
+        }
+        else if (mergedHead < mergedTail)
+        {
+            item = (T) merged[mergedHead];
+            merged[mergedHead++] = null;
+        }
+        else
+        {
+            throw new Exception("Queue is empty");
+        }
+        return item;
+    }
+
+    // Sort the leaves by key, keeping the insertion order of equal keys
+    private void sortLeaves()
+    {
+        Integer[] order = new Integer[leafTail];
+        for (int i = 0; i < leafTail; i++)
+        {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> leafKeys[i]));
+
+        long[] sortedKeys = new long[leafKeys.length];
+        Object[] sortedLeaves = new Object[leaves.length];
+        for (int i = 0; i < leafTail; i++)
+        {
+            sortedKeys[i] = leafKeys[order[i]];
+            sortedLeaves[i] = leaves[order[i]];
+        }
+        leafKeys = sortedKeys;
+        leaves = sortedLeaves;
+        leavesSorted = true;
+    }
+
+    // Returns the number of payloads in both queues
+    @Override
+    public int listCount()
+    {
+        return (leafTail - leafHead) + (mergedTail - mergedHead);
+    }
+}
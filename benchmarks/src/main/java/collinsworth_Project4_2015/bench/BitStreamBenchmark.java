@@ -0,0 +1,125 @@
+package collinsworth_Project4_2015.bench;
+
+import collinsworth_Project4_2015.BitStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link BitStream#writeBits} and {@link BitStream#readBits} with the mix of
+ * short and long fields a Huffman coder produces: lengths of 1 to 15 bits,
+ * shorter ones more often. Each operation writes or reads enough fields to
+ * fill the given size of file.
+ *
+ * @author Tobyn Collinsworth
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BitStreamBenchmark
+{
+
+    // Number of distinct fields, cycled through to fill the file
+    private static final int FIELDS = 1 << 12;
+
+    @Param({"1KB", "1MB", "64MB"})
+    public String size;
+
+    private long fieldCount;
+    private int[] values;
+    private int[] lengths;
+    private File written;
+    private File scratch;
+
+    @Setup
+    public void writeFile() throws IOException
+    {
+        long bits = 8 * Corpus.parseSize(size);
+        Random random = new Random(1);
+        values = new int[FIELDS];
+        lengths = new int[FIELDS];
+        long cycleBits = 0;
+        for (int i = 0; i < FIELDS; i++)
+        {
+            lengths[i] = 1 + Math.min(14, (int) Math.abs(random.nextGaussian() * 5));
+            values[i] = random.nextInt(1 << lengths[i]);
+            cycleBits += lengths[i];
+        }
+        fieldCount = bits * FIELDS / cycleBits;
+        written = Files.createTempFile("huffman-bench", ".bits").toFile();
+        scratch = Files.createTempFile("huffman-bench", ".bits").toFile();
+        write(written);
+    }
+
+    @TearDown
+    public void deleteFiles()
+    {
+        written.delete();
+        scratch.delete();
+    }
+
+    @Benchmark
+    public void writeBits(Throughput throughput) throws IOException
+    {
+        throughput.add(write(scratch) / 8);
+    }
+
+    @Benchmark
+    public long readBits(Throughput throughput) throws IOException
+    {
+        BitStream in = new BitStream(written, "r");
+        long sum = 0;
+        long bits = 0;
+        try
+        {
+            for (long i = 0; i < fieldCount; i++)
+            {
+                int field = (int) (i & (FIELDS - 1));
+                sum += in.readBits(lengths[field]);
+                bits += lengths[field];
+            }
+        } finally
+        {
+            in.close();
+        }
+        throughput.add(bits / 8);
+        return sum;
+    }
+
+    // Write the fields to a file and return the number of bits written
+    private long write(File file) throws IOException
+    {
+        BitStream out = new BitStream(file, "w");
+        long bits = 0;
+        try
+        {
+            for (long i = 0; i < fieldCount; i++)
+            {
+                int field = (int) (i & (FIELDS - 1));
+                out.writeBits(values[field], lengths[field]);
+                bits += lengths[field];
+            }
+        } finally
+        {
+            out.close();
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,160 @@
+package collinsworth_Project4_2015.bench;
+
+import collinsworth_Project4_2015.BlockDecoder;
+import collinsworth_Project4_2015.BlockEncoder;
+import collinsworth_Project4_2015.ByteHuffman;
+import collinsworth_Project4_2015.HuffmanTree;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * File-to-file encoding and decoding. The corpus is written to a temporary
+ * file once per trial, and the tree and the compressed files that the
+ * decoders read are built there too, so each operation is one complete
+ * compression or decompression.
+ * <p>
+ * {@code HuffmanTree.encodeFile} and {@code decodeFile} always use
+ * {@code data.txt} in the working directory, so the text path is measured
+ * through {@code encodeCanonicalFile} and {@code decodeCanonicalFile}, which
+ * read and write characters the same way. The forked JVM reads text as
+ * ISO-8859-1, one character per byte, so binary corpora pass through the
+ * text path unchanged; {@link ByteHuffman} is the same single-table coding
+ * over raw bytes. Add {@code -p size=1GB} for the largest inputs.
+ *
+ * @author Tobyn Collinsworth
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Dfile.encoding=ISO-8859-1")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class CodecBenchmark
+{
+
+    @Param
+    public Corpus corpus;
+
+    @Param({"1KB", "1MB", "64MB"})
+    public String size;
+
+    private long length;
+    private Path directory;
+    private String input;
+    private String canonical;
+    private String blocks;
+    private String interleaved;
+    private String bytes;
+    private String output;
+    private HuffmanTree tree;
+
+    @Setup
+    public void writeFiles() throws IOException
+    {
+        length = Corpus.parseSize(size);
+        directory = Files.createTempDirectory("huffman-bench");
+        input = directory.resolve("input").toString();
+        canonical = directory.resolve("input.chuff").toString();
+        blocks = directory.resolve("input.hufb").toString();
+        interleaved = directory.resolve("input.hufi").toString();
+        bytes = directory.resolve("input.huf8").toString();
+        output = directory.resolve("output").toString();
+        corpus.write(Path.of(input), length);
+        tree = new HuffmanTree(input);
+        tree.encodeCanonicalFile(input, canonical);
+        new BlockEncoder().encodeFile(input, blocks);
+        interleavedEncoder().encodeFile(input, interleaved);
+        ByteHuffman.encodeFile(input, bytes);
+    }
+
+    @TearDown
+    public void deleteFiles() throws IOException
+    {
+        try (Stream<Path> files = Files.list(directory))
+        {
+            for (Path file : (Iterable<Path>) files::iterator)
+            {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public void encodeCanonicalFile(Throughput throughput)
+    {
+        tree.encodeCanonicalFile(input, output);
+        throughput.add(length);
+    }
+
+    @Benchmark
+    public void decodeCanonicalFile(Throughput throughput)
+    {
+        HuffmanTree.decodeCanonicalFile(canonical, output);
+        throughput.add(length);
+    }
+
+    @Benchmark
+    public void encodeBytes(Throughput throughput) throws IOException
+    {
+        ByteHuffman.encodeFile(input, output);
+        throughput.add(length);
+    }
+
+    @Benchmark
+    public void decodeBytes(Throughput throughput) throws IOException
+    {
+        ByteHuffman.decodeFile(bytes, output);
+        throughput.add(length);
+    }
+
+    @Benchmark
+    public void encodeBlocks(Throughput throughput) throws IOException
+    {
+        new BlockEncoder().encodeFile(input, output);
+        throughput.add(length);
+    }
+
+    @Benchmark
+    public void decodeBlocks(Throughput throughput) throws IOException
+    {
+        new BlockDecoder().decodeFile(blocks, output);
+        throughput.add(length);
+    }
+
+    @Benchmark
+    public void encodeInterleavedBlocks(Throughput throughput) throws IOException
+    {
+        interleavedEncoder().encodeFile(input, output);
+        throughput.add(length);
+    }
+
+    @Benchmark
+    public void decodeInterleavedBlocks(Throughput throughput) throws IOException
+    {
+        new BlockDecoder().decodeFile(interleaved, output);
+        throughput.add(length);
+    }
+
+    private static BlockEncoder interleavedEncoder()
+    {
+        return new BlockEncoder(BlockEncoder.DEFAULT_BLOCK_SIZE, BlockEncoder.TableMode.SHARED,
+                ForkJoinPool.commonPool(), 4);
+    }
+}
@@ -0,0 +1,238 @@
+package collinsworth_Project4_2015.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generated inputs for the benchmarks. Every corpus is produced from a fixed
+ * seed, so a size and a corpus always give the same bytes and results from
+ * different runs compare.
+ *
+ * @author Tobyn Collinsworth
+ */
+public enum Corpus
+{
+    UNIFORM         // every byte value equally likely; incompressible
+    {
+        @Override
+        void fill(Random random, byte[] data, int offset, int length)
+        {
+            for (int i = offset; i < offset + length; i++)
+            {
+                data[i] = (byte) random.nextInt(256);
+            }
+        }
+    },
+    ZIPFIAN         // byte value k has probability proportional to 1 / (k + 1)
+    {
+        @Override
+        void fill(Random random, byte[] data, int offset, int length)
+        {
+            for (int i = offset; i < offset + length; i++)
+            {
+                data[i] = (byte) pick(ZIPF_CUMULATIVE, random.nextDouble());
+            }
+        }
+    },
+    ENGLISH         // Zipf-distributed English words in sentences and lines
+    {
+        @Override
+        void fill(Random random, byte[] data, int offset, int length)
+        {
+            int end = offset + length;
+            int i = offset;
+            int column = 0;
+            boolean capitalize = true;
+            while (i < end)
+            {
+                byte[] word = WORDS[pick(WORD_CUMULATIVE, random.nextDouble())];
+                for (int j = 0; j < word.length && i < end; j++)
+                {
+                    data[i++] = j == 0 && capitalize ? (byte) Character.toUpperCase(word[j]) : word[j];
+                }
+                column += word.length + 1;
+                capitalize = false;
+                int punctuation = random.nextInt(16);
+                if (i < end && punctuation < 2)
+                {
+                    data[i++] = (byte) (punctuation == 0 ? '.' : ',');
+                    capitalize = punctuation == 0;
+                    column++;
+                }
+                if (i < end)
+                {
+                    data[i++] = (byte) (column > 70 ? '\n' : ' ');
+                    column = column > 70 ? 0 : column;
+                }
+            }
+        }
+    },
+    BINARY          // rows of a little-endian int column of small values and a double column
+    {
+        @Override
+        void fill(Random random, byte[] data, int offset, int length)
+        {
+            int end = offset + length;
+            int i = offset;
+            while (i < end)
+            {
+                long value = (long) Math.abs(random.nextGaussian() * 1000);
+                for (int j = 0; j < 4 && i < end; j++)
+                {
+                    data[i++] = (byte) (value >>> (8 * j));
+                }
+                long bits = Double.doubleToLongBits(random.nextGaussian());
+                for (int j = 0; j < 8 && i < end; j++)
+                {
+                    data[i++] = (byte) (bits >>> (8 * j));
+                }
+            }
+        }
+    },
+    SINGLE_SYMBOL   // one byte value repeated; the degenerate one-leaf tree
+    {
+        @Override
+        void fill(Random random, byte[] data, int offset, int length)
+        {
+            for (int i = offset; i < offset + length; i++)
+            {
+                data[i] = 'a';
+            }
+        }
+    };
+
+    // Seed shared by every corpus
+    private static final long SEED = 0x48554646L;
+
+    // Bytes generated at a time when writing a corpus to a file
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    private static final double[] ZIPF_CUMULATIVE = zipf(256);
+
+    private static final byte[][] WORDS = words("the of and to a in is it you that he was for on are with as I his they"
+            + " be at one have this from or had by hot word but what some we can out other were all there when up use"
+            + " your how said an each she which do their time if will way about many then them write would like so"
+            + " these her long make thing see him two has look more day could go come did number sound no most people"
+            + " my over know water than call first who may down side been now find any new work part take get place"
+            + " made live where after back little only round man year came show every good me give our under name");
+
+    private static final double[] WORD_CUMULATIVE = zipf(WORDS.length);
+
+    // Fill part of an array with the corpus, drawing from the random source
+    abstract void fill(Random random, byte[] data, int offset, int length);
+
+    /**
+     * Generates the corpus in memory.
+     *
+     * @param size the number of bytes
+     * @return the bytes
+     */
+    public byte[] generate(int size)
+    {
+        byte[] data = new byte[size];
+        fill(new Random(SEED), data, 0, size);
+        return data;
+    }
+
+    /**
+     * Writes the corpus to a file a chunk at a time, so corpora larger than
+     * the heap can be written.
+     *
+     * @param file the file to create
+     * @param size the number of bytes
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Path file, long size) throws IOException
+    {
+        Random random = new Random(SEED);
+        byte[] chunk = new byte[CHUNK_SIZE];
+        try (OutputStream out = Files.newOutputStream(file))
+        {
+            for (long written = 0; written < size; written += CHUNK_SIZE)
+            {
+                int length = (int) Math.min(CHUNK_SIZE, size - written);
+                fill(random, chunk, 0, length);
+                out.write(chunk, 0, length);
+            }
+        }
+    }
+
+    /**
+     * Parses a size such as {@code 1KB}, {@code 64MB} or {@code 1GB}; the
+     * units are powers of 1024.
+     *
+     * @param size the size
+     * @return the number of bytes
+     */
+    public static long parseSize(String size)
+    {
+        String units = size.replaceAll("[0-9]", "");
+        long value = Long.parseLong(size.substring(0, size.length() - units.length()));
+        switch (units)
+        {
+            case "":
+            case "B":
+                return value;
+            case "KB":
+                return value << 10;
+            case "MB":
+                return value << 20;
+            case "GB":
+                return value << 30;
+            default:
+                throw new IllegalArgumentException("Unknown size: " + size);
+        }
+    }
+
+    // Cumulative probabilities of a Zipf distribution over n ranks
+    private static double[] zipf(int n)
+    {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++)
+        {
+            sum += 1.0 / (k + 1);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < n; k++)
+        {
+            cumulative[k] /= sum;
+        }
+        return cumulative;
+    }
+
+    // The first rank whose cumulative probability reaches u
+    private static int pick(double[] cumulative, double u)
+    {
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] < u)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static byte[][] words(String text)
+    {
+        String[] split = text.split(" ");
+        byte[][] words = new byte[split.length][];
+        for (int i = 0; i < split.length; i++)
+        {
+            words[i] = split[i].getBytes(StandardCharsets.US_ASCII);
+        }
+        return words;
+    }
+}
@@ -0,0 +1,82 @@
+package collinsworth_Project4_2015.bench;
+
+import collinsworth_Project4_2015.CharFrequencyMap;
+import collinsworth_Project4_2015.FrequencyCounter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Frequency counting over an in-memory corpus: the byte histograms used by
+ * the block coders, and the character map that {@code HuffmanTree}'s
+ * {@code analyzeFile} builds, read through a one-byte-per-character
+ * {@link java.io.Reader}.
+ * <p>
+ * Sizes up to {@code 64MB} run by default; add {@code -p size=1GB} (and a
+ * large enough {@code -Xmx}) for the largest inputs.
+ *
+ * @author Tobyn Collinsworth
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class CountingBenchmark
+{
+
+    @Param
+    public Corpus corpus;
+
+    @Param({"1KB", "1MB", "64MB"})
+    public String size;
+
+    private byte[] data;
+
+    @Setup
+    public void generate()
+    {
+        data = corpus.generate(Math.toIntExact(Corpus.parseSize(size)));
+    }
+
+    @Benchmark
+    public long[] countBytes(Throughput throughput)
+    {
+        long[] counts = new long[FrequencyCounter.BYTE_SYMBOLS];
+        FrequencyCounter.countBytes(data, 0, data.length, counts);
+        throughput.add(data.length);
+        return counts;
+    }
+
+    @Benchmark
+    public long[] countBytesInterleaved(Throughput throughput)
+    {
+        long[] counts = new long[FrequencyCounter.BYTE_SYMBOLS];
+        FrequencyCounter.countBytesInterleaved(data, 0, data.length, counts);
+        throughput.add(data.length);
+        return counts;
+    }
+
+    @Benchmark
+    public CharFrequencyMap countChars(Throughput throughput) throws IOException
+    {
+        CharFrequencyMap counts = FrequencyCounter.countChars(
+                new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.ISO_8859_1));
+        throughput.add(data.length);
+        return counts;
+    }
+}
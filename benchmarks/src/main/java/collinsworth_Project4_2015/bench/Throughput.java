@@ -0,0 +1,38 @@
+package collinsworth_Project4_2015.bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the input processed by a benchmark, so JMH reports it next to the
+ * score: in {@link org.openjdk.jmh.annotations.Mode#Throughput} mode with
+ * seconds as the time unit, the {@code megabytes} line of each result is
+ * the throughput in MB/s (of 2^20 bytes).
+ *
+ * @author Tobyn Collinsworth
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Throughput
+{
+
+    /**
+     * Megabytes processed in the current iteration
+     */
+    public double megabytes;
+
+    @Setup(Level.Iteration)
+    public void reset()
+    {
+        megabytes = 0;
+    }
+
+    // Record one operation over the given number of bytes
+    void add(long bytes)
+    {
+        megabytes += bytes / (double) (1 << 20);
+    }
+}
@@ -0,0 +1,123 @@
+package collinsworth_Project4_2015.bench;
+
+import collinsworth_Project4_2015.BinaryHeapQueue;
+import collinsworth_Project4_2015.FlatHuffmanCode;
+import collinsworth_Project4_2015.FrequencyCounter;
+import collinsworth_Project4_2015.HuffmanQueue;
+import collinsworth_Project4_2015.HuffmanTree;
+import collinsworth_Project4_2015.OrderedLinkedList;
+import collinsworth_Project4_2015.TwoQueue;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Huffman tree construction from a histogram with each of the priority
+ * queues, using the same insert-all-then-merge loop as {@code HuffmanTree},
+ * against the in-place code length computation of {@code FlatHuffmanCode},
+ * which builds no nodes (it ignores the queue parameter).
+ * The cost depends only on the number of distinct symbols, so each corpus
+ * is counted once at 1 MB and there is no size parameter.
+ *
+ * @author Tobyn Collinsworth
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TreeBuildBenchmark
+{
+
+    // Tree node, as HuffmanTree's HtNode without the character
+    static class Node
+    {
+        final long count;
+        final Node left;
+        final Node right;
+
+        Node(long count, Node left, Node right)
+        {
+            this.count = count;
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    @Param
+    public Corpus corpus;
+
+    @Param
+    public HuffmanTree.QueueStrategy strategy;
+
+    private long[] leafCounts;
+
+    @Setup
+    public void count()
+    {
+        byte[] data = corpus.generate(1 << 20);
+        long[] counts = new long[FrequencyCounter.BYTE_SYMBOLS];
+        FrequencyCounter.countBytes(data, 0, data.length, counts);
+        int symbols = 0;
+        for (long count : counts)
+        {
+            symbols += count > 0 ? 1 : 0;
+        }
+        leafCounts = new long[symbols];
+        int next = 0;
+        for (long count : counts)
+        {
+            if (count > 0)
+            {
+                leafCounts[next++] = count;
+            }
+        }
+    }
+
+    @Benchmark
+    public Node buildTree() throws Exception
+    {
+        HuffmanQueue<Node> queue = newQueue();
+        for (long count : leafCounts)
+        {
+            queue.insert(new Node(count, null, null), count);
+        }
+        while (queue.listCount() > 1)
+        {
+            Node left = queue.deque();
+            Node right = queue.deque();
+            Node merged = new Node(left.count + right.count, left, right);
+            queue.insert(merged, merged.count);
+        }
+        return queue.deque();
+    }
+
+    @Benchmark
+    public int[] flatCodeLengths()
+    {
+        return FlatHuffmanCode.codeLengths(leafCounts, FlatHuffmanCode.MAX_CODE_LENGTH);
+    }
+
+    private HuffmanQueue<Node> newQueue()
+    {
+        switch (strategy)
+        {
+            case BINARY_HEAP:
+                return new BinaryHeapQueue<>(leafCounts.length);
+            case TWO_QUEUE:
+                return new TwoQueue<>(leafCounts.length);
+            default:
+                return new OrderedLinkedList<>();
+        }
+    }
+}